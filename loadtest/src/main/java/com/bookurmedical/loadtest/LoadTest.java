@@ -0,0 +1,73 @@
+package com.bookurmedical.loadtest;
+
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * End-to-end load test of the signup / signin / case-sheet / upload flows.
+ *
+ * From the repository root:
+ *
+ * mvn -B -DskipTests package
+ * mvn -B -f loadtest/pom.xml compile exec:java -Dexec.args="--concurrency=64 --duration=PT2M"
+ *
+ * Starts an embedded Mongo, an SMTP sink and the packaged application, runs
+ * {@code --concurrency} virtual users through {@link Scenario} for the warm-up
+ * plus the measured duration, and writes into the output directory:
+ * - report.json — per-endpoint count, errors, req/s, p50/p90/p99/p99.9/max;
+ * - one .hgrm percentile distribution per endpoint;
+ * - app.log — the application's output.
+ *
+ * Pass {@code --compare=<earlier report.json>} to print the relative change
+ * per endpoint between two commits. See {@link Settings#USAGE} for all options.
+ */
+public class LoadTest {
+
+    public static void main(String[] args) throws Exception {
+        Settings settings = Settings.parse(args);
+        Path outputDir = Files.createDirectories(settings.outputDir());
+        HttpClient http = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(10))
+                .version(HttpClient.Version.HTTP_1_1)
+                .build();
+
+        try (TestEnvironment env = TestEnvironment.start(settings, http)) {
+            Metrics metrics = new Metrics();
+            Scenario scenario = new Scenario(settings, env, http, metrics);
+            Instant measureFrom = Instant.now().plus(settings.warmup());
+            Instant deadline = measureFrom.plus(settings.duration());
+
+            System.out.printf("[run] %d virtual users, warm-up %s, measuring %s%n",
+                    settings.concurrency(), settings.warmup(), settings.duration());
+            try (ExecutorService users = Executors.newVirtualThreadPerTaskExecutor()) {
+                List<Future<?>> running = new ArrayList<>();
+                for (int user = 0; user < settings.concurrency(); user++) {
+                    int id = user;
+                    running.add(users.submit(() -> scenario.run(id, deadline)));
+                }
+
+                Thread.sleep(Math.max(0, Duration.between(Instant.now(), measureFrom).toMillis()));
+                metrics.reset();
+                long measuredStart = System.nanoTime();
+                for (Future<?> user : running)
+                    user.get();
+                double seconds = (System.nanoTime() - measuredStart) / 1e9;
+
+                Report report = metrics.snapshot(settings, seconds, outputDir);
+                report.write(outputDir.resolve("report.json"));
+                report.print();
+                if (settings.compareWith() != null)
+                    report.printComparison(Report.read(settings.compareWith()));
+                System.out.println("\n[run] Report written to " + outputDir.resolve("report.json"));
+            }
+        }
+    }
+}
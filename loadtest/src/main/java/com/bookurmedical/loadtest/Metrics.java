@@ -0,0 +1,79 @@
+package com.bookurmedical.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-endpoint latency histograms (microsecond resolution, 3 significant
+ * digits) and error counts. Recording is lock-free; {@link #reset()} drops
+ * everything recorded so far, which is how the warm-up is excluded.
+ */
+final class Metrics {
+
+    private static final class Endpoint {
+        final Recorder recorder = new Recorder(3);
+        final LongAdder errors = new LongAdder();
+    }
+
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+    void record(String endpoint, long startNanos, boolean ok) {
+        Endpoint e = endpoints.computeIfAbsent(endpoint, k -> new Endpoint());
+        e.recorder.recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+        if (!ok)
+            e.errors.increment();
+    }
+
+    void reset() {
+        endpoints.values().forEach(e -> {
+            e.recorder.reset();
+            e.errors.reset();
+        });
+    }
+
+    /**
+     * Snapshots the histograms into a report and writes each endpoint's full
+     * percentile distribution (.hgrm, in milliseconds) into {@code outputDir}.
+     */
+    Report snapshot(Settings settings, double seconds, Path outputDir) throws IOException {
+        Map<String, Report.EndpointStats> stats = new TreeMap<>();
+        for (Map.Entry<String, Endpoint> entry : endpoints.entrySet()) {
+            Histogram h = entry.getValue().recorder.getIntervalHistogram();
+            if (h.getTotalCount() == 0)
+                continue;
+            stats.put(entry.getKey(), new Report.EndpointStats(
+                    h.getTotalCount(),
+                    entry.getValue().errors.sum(),
+                    h.getTotalCount() / seconds,
+                    millis(h.getValueAtPercentile(50)),
+                    millis(h.getValueAtPercentile(90)),
+                    millis(h.getValueAtPercentile(99)),
+                    millis(h.getValueAtPercentile(99.9)),
+                    millis(h.getMaxValue())));
+
+            Path hgrm = outputDir.resolve(fileName(entry.getKey()) + ".hgrm");
+            try (PrintStream out = new PrintStream(Files.newOutputStream(hgrm))) {
+                h.outputPercentileDistribution(out, 1000.0);
+            }
+        }
+        return Report.create(settings, seconds, stats);
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+
+    private static String fileName(String endpoint) {
+        return endpoint.replaceAll("[^A-Za-z0-9]+", "_").replaceAll("^_|_$", "");
+    }
+}
@@ -0,0 +1,76 @@
+package com.bookurmedical.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Result of one run, written as report.json. Two reports taken with the same
+ * settings can be diffed with {@link #printComparison(Report)}.
+ */
+record Report(String commit, String finishedAt, Map<String, Object> settings, double seconds,
+        Map<String, EndpointStats> endpoints) {
+
+    record EndpointStats(long count, long errors, double throughput, double p50Ms, double p90Ms, double p99Ms,
+            double p999Ms, double maxMs) {
+    }
+
+    private static final ObjectMapper JSON = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    static Report create(Settings settings, double seconds, Map<String, EndpointStats> endpoints) {
+        return new Report(gitCommit(), Instant.now().toString(), settings.describe(), seconds, endpoints);
+    }
+
+    static Report read(Path file) throws IOException {
+        return JSON.readValue(file.toFile(), Report.class);
+    }
+
+    void write(Path file) throws IOException {
+        JSON.writeValue(file.toFile(), this);
+    }
+
+    void print() {
+        System.out.printf("%nCommit %s, %d virtual users, %.0f s measured%n", commit, settings.get("concurrency"),
+                seconds);
+        System.out.printf("%-44s %8s %7s %9s %9s %9s %9s %9s%n",
+                "endpoint", "count", "errors", "req/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+        endpoints.forEach((name, s) -> System.out.printf("%-44s %8d %7d %9.1f %9.2f %9.2f %9.2f %9.2f%n",
+                name, s.count(), s.errors(), s.throughput(), s.p50Ms(), s.p99Ms(), s.p999Ms(), s.maxMs()));
+    }
+
+    /** Relative change per endpoint; negative latency / positive throughput deltas are improvements. */
+    void printComparison(Report baseline) {
+        System.out.printf("%nCompared with %s (commit %s)%n", baseline.finishedAt(), baseline.commit());
+        if (!settings.equals(baseline.settings()))
+            System.out.println("WARNING: settings differ, deltas are not like-for-like");
+        System.out.printf("%-44s %9s %9s %9s %9s%n", "endpoint", "req/s", "p50", "p99", "p99.9");
+        endpoints.forEach((name, s) -> {
+            EndpointStats b = baseline.endpoints().get(name);
+            if (b == null) {
+                System.out.printf("%-44s %9s%n", name, "new");
+                return;
+            }
+            System.out.printf("%-44s %9s %9s %9s %9s%n", name,
+                    delta(b.throughput(), s.throughput()), delta(b.p50Ms(), s.p50Ms()),
+                    delta(b.p99Ms(), s.p99Ms()), delta(b.p999Ms(), s.p999Ms()));
+        });
+    }
+
+    private static String delta(double before, double after) {
+        return before == 0 ? "n/a" : String.format("%+.1f%%", (after - before) * 100 / before);
+    }
+
+    private static String gitCommit() {
+        try {
+            Process git = new ProcessBuilder("git", "rev-parse", "--short", "HEAD").redirectErrorStream(true).start();
+            String out = new String(git.getInputStream().readAllBytes()).trim();
+            return git.waitFor() == 0 ? out : "unknown";
+        } catch (Exception e) {
+            return "unknown";
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.bookurmedical.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * One virtual user's flow, run in a closed loop until the deadline:
+ *
+ * every {@code signupEvery} iterations: sign up → read the verification mail →
+ * verify; then each iteration: sign in → upload a file → submit the case
+ * sheet referencing it → read the sheet back → download the file.
+ *
+ * Closed loop means a slow response delays the next request of that user, so
+ * throughput is what the server sustained at this concurrency — compare runs
+ * at equal --concurrency.
+ */
+final class Scenario {
+
+    private static final String JSON = "application/json";
+    private static final Duration MAIL_TIMEOUT = Duration.ofSeconds(30);
+
+    private final Settings settings;
+    private final TestEnvironment env;
+    private final HttpClient http;
+    private final Metrics metrics;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final String runId = UUID.randomUUID().toString().substring(0, 8);
+
+    Scenario(Settings settings, TestEnvironment env, HttpClient http, Metrics metrics) {
+        this.settings = settings;
+        this.env = env;
+        this.http = http;
+        this.metrics = metrics;
+    }
+
+    void run(int user, Instant deadline) {
+        String username = null;
+        String password = "Lt-" + UUID.randomUUID();
+        for (long iteration = 0; Instant.now().isBefore(deadline); iteration++) {
+            try {
+                if (iteration % settings.signupEvery() == 0) {
+                    username = "lt-" + runId + "-" + user + "-" + iteration;
+                    register(username, password);
+                }
+                String jwt = signIn(username, password);
+                String fileName = upload(jwt);
+                submit(jwt, iteration, fileName);
+                call("GET /api/medical-history", authorized(jwt, "/api/medical-history").GET().build());
+                call("GET /api/medical-history/files/{name}",
+                        authorized(jwt, "/api/medical-history/files/" + fileName).GET().build(),
+                        HttpResponse.BodyHandlers.discarding());
+            } catch (FlowException e) {
+                // The failed request is already counted as an error; start the next iteration afresh
+                iteration = -1;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    // ── Steps ─────────────────────────────────────────────────────────────────
+
+    private void register(String username, String password) throws FlowException, InterruptedException {
+        String email = username + "@loadtest.local";
+        Map<String, Object> signup = new LinkedHashMap<>();
+        signup.put("username", username);
+        signup.put("email", email);
+        signup.put("password", password);
+        signup.put("role", "USER");
+        signup.put("firstName", "Load");
+        signup.put("lastName", "Test " + username);
+        signup.put("phoneNumber", "+1555" + ThreadLocalRandom.current().nextInt(1_000_000, 9_999_999));
+        call("POST /api/auth/signup", request("/api/auth/signup").header("Content-Type", JSON)
+                .POST(json(signup)).build());
+
+        // Mail is sent asynchronously; time until it reaches the sink
+        long start = System.nanoTime();
+        String token;
+        try {
+            token = env.awaitVerificationToken(email, MAIL_TIMEOUT);
+            metrics.record("SMTP verification mail delivered", start, true);
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (Exception e) {
+            metrics.record("SMTP verification mail delivered", start, false);
+            throw new FlowException();
+        }
+        call("GET /api/auth/verify-email", request("/api/auth/verify-email?token="
+                + URLEncoder.encode(token, StandardCharsets.UTF_8)).GET().build());
+    }
+
+    private String signIn(String username, String password) throws FlowException, InterruptedException {
+        String body = call("POST /api/auth/signin", request("/api/auth/signin").header("Content-Type", JSON)
+                .POST(json(Map.of("username", username, "password", password))).build());
+        try {
+            JsonNode response = mapper.readTree(body);
+            return response.path("token").asText();
+        } catch (Exception e) {
+            throw new FlowException();
+        }
+    }
+
+    private String upload(String jwt) throws FlowException, InterruptedException {
+        byte[] content = new byte[settings.uploadSize()];
+        ThreadLocalRandom.current().nextBytes(content);
+        String boundary = "----loadtest" + UUID.randomUUID();
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream(content.length + 256);
+        body.writeBytes(("--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"report.bin\"\r\n"
+                + "Content-Type: application/octet-stream\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        body.writeBytes(content);
+        body.writeBytes(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8));
+
+        return call("POST /api/medical-history/upload", authorized(jwt, "/api/medical-history/upload")
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body.toByteArray()))
+                .build()).trim();
+    }
+
+    private void submit(String jwt, long iteration, String fileName) throws FlowException, InterruptedException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Map<String, Object> sheet = new LinkedHashMap<>();
+        sheet.put("name", "Load Test Patient");
+        sheet.put("dob", "1980-01-01");
+        sheet.put("sex", "F");
+        sheet.put("height", "170");
+        sheet.put("weight", String.valueOf(60 + random.nextInt(20)));
+        sheet.put("heartRate", String.valueOf(60 + random.nextInt(40)));
+        sheet.put("spo2", String.valueOf(94 + random.nextInt(6)));
+        sheet.put("bloodPressure", (110 + random.nextInt(30)) + "/" + (70 + random.nextInt(20)));
+        sheet.put("respiratoryRate", String.valueOf(12 + random.nextInt(8)));
+        sheet.put("chiefComplaint", "Follow-up visit " + iteration);
+        sheet.put("primaryDiagnosis", "Type 2 diabetes mellitus");
+        sheet.put("secondaryDiagnosis", "Essential hypertension");
+        sheet.put("allergies", "Penicillin");
+        sheet.put("progressNotes", "Iteration " + iteration + " of load test run " + runId);
+        sheet.put("bloodReportFile", fileName);
+        call("POST /api/medical-history/submit", authorized(jwt, "/api/medical-history/submit")
+                .header("Content-Type", JSON).POST(json(sheet)).build());
+    }
+
+    // ── HTTP ──────────────────────────────────────────────────────────────────
+
+    private String call(String endpoint, HttpRequest request) throws FlowException, InterruptedException {
+        return call(endpoint, request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    /** Sends, times and records one request; non-2xx responses abort the iteration. */
+    private <T> T call(String endpoint, HttpRequest request, HttpResponse.BodyHandler<T> handler)
+            throws FlowException, InterruptedException {
+        long start = System.nanoTime();
+        HttpResponse<T> response;
+        try {
+            response = http.send(request, handler);
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (Exception e) {
+            metrics.record(endpoint, start, false);
+            throw new FlowException();
+        }
+        boolean ok = response.statusCode() / 100 == 2;
+        metrics.record(endpoint, start, ok);
+        if (!ok)
+            throw new FlowException();
+        return response.body();
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create(env.baseUrl() + path)).timeout(Duration.ofSeconds(60));
+    }
+
+    private HttpRequest.Builder authorized(String jwt, String path) {
+        return request(path).header("Authorization", "Bearer " + jwt);
+    }
+
+    private HttpRequest.BodyPublisher json(Object value) {
+        try {
+            return HttpRequest.BodyPublishers.ofByteArray(mapper.writeValueAsBytes(value));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** A step failed; the iteration is abandoned. */
+    private static final class FlowException extends Exception {
+        FlowException() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.bookurmedical.loadtest;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Command-line options, all in {@code --name=value} form. Repeatable options
+ * ({@code --app-arg}, {@code --jvm-arg}) may be given several times.
+ */
+public record Settings(
+        int concurrency,
+        Duration duration,
+        Duration warmup,
+        int uploadSize,
+        int signupEvery,
+        Path appJar,
+        List<String> jvmArgs,
+        List<String> appArgs,
+        String baseUrl,
+        String mongoUri,
+        String mongoVersion,
+        int smtpPort,
+        Path outputDir,
+        Path compareWith) {
+
+    static final String USAGE = """
+            Options:
+              --concurrency=N        virtual users (default 32)
+              --duration=ISO-8601    measured run time (default PT1M)
+              --warmup=ISO-8601      unmeasured ramp-up before it (default PT15S)
+              --upload-size=BYTES    size of each uploaded file (default 262144)
+              --signup-every=N       each virtual user registers a fresh account every N iterations (default 10)
+              --app-jar=PATH         packaged application (default target/bookurmedical-0.0.1-SNAPSHOT.jar)
+              --jvm-arg=ARG          extra JVM option for the application (repeatable)
+              --app-arg=ARG          extra Spring argument, e.g. --app-arg=--spring.threads.virtual.enabled=true
+              --base-url=URL         drive an already running instance instead (its mail must go to --smtp-port)
+              --mongo-uri=URI        use this Mongo instead of starting an embedded one
+              --mongo-version=X.Y    embedded Mongo version (default 7.0)
+              --smtp-port=N          SMTP sink port (default: any free port)
+              --out=DIR              report directory (default target/loadtest/<timestamp>)
+              --compare=FILE         report.json of an earlier run to diff against
+            """;
+
+    static Settings parse(String[] args) {
+        Map<String, List<String>> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (arg.equals("--help") || arg.equals("-h")) {
+                System.out.println(USAGE);
+                System.exit(0);
+            }
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0)
+                throw new IllegalArgumentException("Expected --name=value but got '" + arg + "'\n" + USAGE);
+            options.computeIfAbsent(arg.substring(2, eq), k -> new ArrayList<>()).add(arg.substring(eq + 1));
+        }
+
+        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+        Settings settings = new Settings(
+                Integer.parseInt(single(options, "concurrency", "32")),
+                Duration.parse(single(options, "duration", "PT1M")),
+                Duration.parse(single(options, "warmup", "PT15S")),
+                Integer.parseInt(single(options, "upload-size", "262144")),
+                Math.max(1, Integer.parseInt(single(options, "signup-every", "10"))),
+                appJar(single(options, "app-jar", null)),
+                options.getOrDefault("jvm-arg", List.of()),
+                options.getOrDefault("app-arg", List.of()),
+                single(options, "base-url", null),
+                single(options, "mongo-uri", null),
+                single(options, "mongo-version", "7.0"),
+                Integer.parseInt(single(options, "smtp-port", "0")),
+                Path.of(single(options, "out", "target/loadtest/" + timestamp)),
+                options.containsKey("compare") ? Path.of(single(options, "compare", null)) : null);
+        if (!options.isEmpty())
+            throw new IllegalArgumentException("Unknown option(s) " + options.keySet() + "\n" + USAGE);
+        return settings;
+    }
+
+    /** The options that shape the load, recorded in the report so runs are comparable. */
+    Map<String, Object> describe() {
+        Map<String, Object> described = new LinkedHashMap<>();
+        described.put("concurrency", concurrency);
+        described.put("duration", duration.toString());
+        described.put("warmup", warmup.toString());
+        described.put("uploadSize", uploadSize);
+        described.put("signupEvery", signupEvery);
+        described.put("jvmArgs", jvmArgs);
+        described.put("appArgs", appArgs);
+        described.put("target", baseUrl != null ? baseUrl : "embedded");
+        return described;
+    }
+
+    private static String single(Map<String, List<String>> options, String name, String fallback) {
+        List<String> values = options.remove(name);
+        return values == null ? fallback : values.get(values.size() - 1);
+    }
+
+    /** Works whether the harness is run from the repository root or from loadtest/. */
+    private static Path appJar(String configured) {
+        if (configured != null)
+            return Path.of(configured);
+        Path fromRoot = Path.of("target", "bookurmedical-0.0.1-SNAPSHOT.jar");
+        return Files.exists(fromRoot) ? fromRoot : Path.of("..").resolve(fromRoot);
+    }
+}
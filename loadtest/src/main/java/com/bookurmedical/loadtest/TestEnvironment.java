@@ -0,0 +1,174 @@
+package com.bookurmedical.loadtest;
+
+import com.icegreen.greenmail.util.GreenMail;
+import com.icegreen.greenmail.util.ServerSetup;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.mongo.transitions.Mongod;
+import de.flapdoodle.embed.mongo.transitions.RunningMongodProcess;
+import de.flapdoodle.reverse.TransitionWalker;
+import jakarta.mail.internet.MimeMessage;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Everything the application under test talks to, plus the application
+ * itself:
+ * - an embedded mongod (unless --mongo-uri is given), downloaded on first use;
+ * - a GreenMail SMTP sink, so verification mails can be read back;
+ * - the packaged jar in its own JVM (unless --base-url is given), with its
+ * output in app.log next to the report.
+ */
+final class TestEnvironment implements AutoCloseable {
+
+    private static final Pattern VERIFY_TOKEN = Pattern.compile("verify-email\\?token=([A-Za-z0-9-]+)");
+    private static final Duration STARTUP_TIMEOUT = Duration.ofMinutes(2);
+
+    private TransitionWalker.ReachedState<RunningMongodProcess> mongod;
+    private GreenMail smtp;
+    private Process app;
+    private String baseUrl;
+
+    static TestEnvironment start(Settings settings, HttpClient http) throws Exception {
+        TestEnvironment env = new TestEnvironment();
+        try {
+            env.startSmtp(settings.smtpPort() > 0 ? settings.smtpPort() : freePort());
+            if (settings.baseUrl() != null) {
+                env.baseUrl = settings.baseUrl();
+            } else {
+                String mongoUri = settings.mongoUri() != null ? settings.mongoUri() : env.startMongo(settings);
+                env.startApp(settings, mongoUri);
+            }
+            env.awaitReady(http);
+            return env;
+        } catch (Exception e) {
+            env.close();
+            throw e;
+        }
+    }
+
+    String baseUrl() {
+        return baseUrl;
+    }
+
+    /** Waits for the verification mail sent to {@code email} and returns its token. */
+    String awaitVerificationToken(String email, Duration timeout) throws Exception {
+        Instant deadline = Instant.now().plus(timeout);
+        while (Instant.now().isBefore(deadline)) {
+            for (MimeMessage message : smtp.getReceivedMessagesForDomain(email)) {
+                Matcher m = VERIFY_TOKEN.matcher(String.valueOf(message.getContent()));
+                if (m.find())
+                    return m.group(1);
+            }
+            Thread.sleep(50);
+        }
+        throw new IllegalStateException("No verification mail for " + email + " within " + timeout);
+    }
+
+    // ── Startup ───────────────────────────────────────────────────────────────
+
+    private void startSmtp(int port) {
+        smtp = new GreenMail(new ServerSetup(port, "127.0.0.1", ServerSetup.PROTOCOL_SMTP));
+        smtp.start();
+        System.out.println("[env] SMTP sink on 127.0.0.1:" + port);
+    }
+
+    private String startMongo(Settings settings) {
+        Version.Main version = Version.Main.valueOf("V" + settings.mongoVersion().replace('.', '_'));
+        mongod = Mongod.instance().start(version);
+        var address = mongod.current().getServerAddress();
+        String uri = "mongodb://" + address.getHost() + ":" + address.getPort() + "/bookurmedical-loadtest";
+        System.out.println("[env] Embedded Mongo " + settings.mongoVersion() + " at " + uri);
+        return uri;
+    }
+
+    private void startApp(Settings settings, String mongoUri) throws IOException {
+        if (!Files.isRegularFile(settings.appJar()))
+            throw new IllegalStateException("Application jar not found at " + settings.appJar().toAbsolutePath()
+                    + " — run 'mvn -B -DskipTests package' in the repository root first");
+        int port = freePort();
+        Path storage = Files.createDirectories(settings.outputDir().resolve("uploads"));
+
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(settings.jvmArgs());
+        command.add("-jar");
+        command.add(settings.appJar().toAbsolutePath().toString());
+        command.add("--server.port=" + port);
+        command.add("--spring.data.mongodb.uri=" + mongoUri);
+        command.add("--spring.data.mongodb.database=bookurmedical-loadtest");
+        command.add("--spring.mail.host=127.0.0.1");
+        command.add("--spring.mail.port=" + smtp.getSmtp().getPort());
+        command.add("--spring.mail.properties.mail.smtp.auth=false");
+        command.add("--spring.mail.properties.mail.smtp.starttls.enable=false");
+        command.add("--app.storage.type=local");
+        command.add("--app.storage.local.root=" + storage.toAbsolutePath());
+        command.add("--app.storage.sweeper.enabled=false");
+        command.addAll(settings.appArgs());
+
+        Path log = settings.outputDir().resolve("app.log");
+        app = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(log.toFile())
+                .start();
+        baseUrl = "http://127.0.0.1:" + port + "/services";
+        System.out.println("[env] Application starting on " + baseUrl + " (log: " + log + ")");
+    }
+
+    /** Any HTTP answer from an auth endpoint means the context is up. */
+    private void awaitReady(HttpClient http) throws Exception {
+        HttpRequest probe = HttpRequest.newBuilder(URI.create(baseUrl + "/api/auth/verify-email?token=probe"))
+                .timeout(Duration.ofSeconds(5))
+                .build();
+        Instant deadline = Instant.now().plus(STARTUP_TIMEOUT);
+        while (Instant.now().isBefore(deadline)) {
+            if (app != null && !app.isAlive())
+                throw new IllegalStateException("Application exited with code " + app.exitValue() + ", see app.log");
+            try {
+                http.send(probe, HttpResponse.BodyHandlers.discarding());
+                System.out.println("[env] Application is up");
+                return;
+            } catch (IOException notYet) {
+                Thread.sleep(500);
+            }
+        }
+        throw new IllegalStateException("Application not ready after " + STARTUP_TIMEOUT);
+    }
+
+    @Override
+    public void close() {
+        if (app != null) {
+            app.destroy();
+            try {
+                if (!app.waitFor(30, TimeUnit.SECONDS))
+                    app.destroyForcibly();
+            } catch (InterruptedException e) {
+                app.destroyForcibly();
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (smtp != null)
+            smtp.stop();
+        if (mongod != null)
+            mongod.close();
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
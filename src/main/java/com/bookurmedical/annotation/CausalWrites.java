@@ -0,0 +1,16 @@
+package com.bookurmedical.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Mark a method whose writes must be visible to the same user's later
+ * {@link SecondaryReads}: the writes run in a causally consistent session
+ * and its operation time is remembered for the user.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface CausalWrites {
+}
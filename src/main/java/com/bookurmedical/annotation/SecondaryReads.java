@@ -0,0 +1,25 @@
+package com.bookurmedical.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Mark a service or repository method whose Mongo reads may be served by a
+ * secondary (secondaryPreferred, bounded by app.mongo.read.max-staleness).
+ * Everything not marked keeps reading from the primary.
+ *
+ * If the current user wrote through a {@link CausalWrites} method recently,
+ * the reads run in a causally consistent session after that write, so the
+ * user still sees their own changes.
+ *
+ * Usage:
+ *
+ * @SecondaryReads
+ *                 public SummaryPage list(String cursor, int limit)
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface SecondaryReads {
+}
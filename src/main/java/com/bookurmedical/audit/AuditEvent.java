@@ -0,0 +1,31 @@
+package com.bookurmedical.audit;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+
+import java.time.Instant;
+import java.util.Date;
+
+/**
+ * One entry of the PHI access trail: who did what to which record. Holds ids
+ * and field names only, never record contents.
+ *
+ * The _id is assigned when the event is created, so a batch that is written
+ * twice (partly inserted, then spilled and replayed) is stored once.
+ */
+public record AuditEvent(ObjectId id, Instant at, String actor, String action, String resource, String resourceId,
+        String detail) {
+
+    Document toDocument() {
+        Document document = new Document("_id", id)
+                .append("at", Date.from(at))
+                .append("actor", actor)
+                .append("action", action)
+                .append("resource", resource);
+        if (resourceId != null)
+            document.append("resourceId", resourceId);
+        if (detail != null)
+            document.append("detail", detail);
+        return document;
+    }
+}
@@ -0,0 +1,362 @@
+package com.bookurmedical.audit;
+
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.InsertManyOptions;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.bson.Document;
+import org.bson.json.JsonParseException;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Append-only trail of who read or wrote which case sheet (audit_log).
+ *
+ * {@link #record} never blocks and never touches Mongo: it puts the event in
+ * a lock-free ring buffer and returns. A single "audit-flush" thread drains
+ * the buffer and writes unordered insertMany batches, once batch-size events
+ * are waiting or flush-interval after the first one, whichever comes first.
+ *
+ * While Mongo is unreachable, batches are appended to NDJSON spill files
+ * instead (and Mongo is retried every retry-interval); the files are
+ * replayed, then deleted, once a write succeeds again. If the buffer itself
+ * fills up, new events are dropped and counted
+ * (bookurmedical.audit.events{outcome=dropped}) rather than slowing requests.
+ */
+@Component
+public class AuditLog implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(AuditLog.class);
+
+    static final String COLLECTION = "audit_log";
+    private static final String SPILL_PREFIX = "audit-";
+    private static final String SPILL_SUFFIX = ".ndjson";
+    private static final long DROP_WARNING_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Value("${app.audit.batch-size:500}")
+    private int batchSize;
+
+    @Value("${app.audit.flush-interval:PT1S}")
+    private Duration flushInterval;
+
+    @Value("${app.audit.retry-interval:PT30S}")
+    private Duration retryInterval;
+
+    @Value("${app.audit.spill-dir:audit-spill}")
+    private Path spillDir;
+
+    private final AuditRingBuffer buffer;
+    private final Counter dropped;
+    private final Counter stored;
+    private final Counter spilled;
+    private final Counter lost;
+    private final Timer mongoFlushes;
+    private final Timer spillFlushes;
+    private final AtomicLong lastDropWarning = new AtomicLong(System.nanoTime() - DROP_WARNING_INTERVAL_NANOS);
+
+    private volatile boolean running;
+    private volatile Thread flusher;
+
+    // Owned by the flush thread
+    private boolean indexed;
+    private boolean mongoDown;
+    private long retryAt;
+    private Path spillFile;
+
+    public AuditLog(@Value("${app.audit.buffer-size:65536}") int bufferSize, MeterRegistry meterRegistry) {
+        this.buffer = new AuditRingBuffer(bufferSize);
+        this.dropped = events(meterRegistry, "dropped");
+        this.stored = events(meterRegistry, "stored");
+        this.spilled = events(meterRegistry, "spilled");
+        this.lost = events(meterRegistry, "lost");
+        this.mongoFlushes = flushTimer(meterRegistry, "mongo");
+        this.spillFlushes = flushTimer(meterRegistry, "spill");
+        Gauge.builder("bookurmedical.audit.queue", buffer, AuditRingBuffer::size)
+                .description("Audit events waiting to be flushed")
+                .register(meterRegistry);
+    }
+
+    private static Counter events(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("bookurmedical.audit.events").tag("outcome", outcome).register(meterRegistry);
+    }
+
+    private static Timer flushTimer(MeterRegistry meterRegistry, String target) {
+        return Timer.builder("bookurmedical.audit.flush")
+                .description("Audit batch writes, to Mongo or to a spill file")
+                .tag("target", target)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Records an access by the current user ("system" outside a request).
+     *
+     * @param resource   collection (or "files") the record belongs to
+     * @param resourceId id of the record, or null for list-style access
+     * @param detail     ids / field names / counts only, never PHI values
+     */
+    public void record(String action, String resource, String resourceId, String detail) {
+        AuditEvent event = new AuditEvent(new ObjectId(), Instant.now(), currentActor(), action, resource,
+                resourceId, detail);
+        if (!buffer.offer(event)) {
+            dropped.increment();
+            long last = lastDropWarning.get();
+            long now = System.nanoTime();
+            if (now - last >= DROP_WARNING_INTERVAL_NANOS && lastDropWarning.compareAndSet(last, now))
+                log.warn("[Audit] Buffer full ({} events), dropping audit events", buffer.capacity());
+            return;
+        }
+        // Size trigger: wake the flusher without waiting for the interval
+        if (buffer.size() == batchSize)
+            LockSupport.unpark(flusher);
+    }
+
+    private static String currentActor() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null ? authentication.getName() : "system";
+    }
+
+    // ── Lifecycle ─────────────────────────────────────────────────────────────
+
+    @Override
+    public void start() {
+        running = true;
+        flusher = Thread.ofPlatform().daemon().name("audit-flush").start(this::run);
+    }
+
+    /** Flushes whatever is still buffered (to Mongo or a spill file) before returning. */
+    @Override
+    public void stop() {
+        running = false;
+        LockSupport.unpark(flusher);
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (buffer.size() > 0)
+            log.warn("[Audit] {} audit events not flushed at shutdown", buffer.size());
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /** Started before, and stopped after, the web server: requests still in flight can record. */
+    @Override
+    public int getPhase() {
+        return DEFAULT_PHASE - 4096;
+    }
+
+    // ── Flush loop ────────────────────────────────────────────────────────────
+
+    private void run() {
+        recover();
+
+        long intervalNanos = flushInterval.toNanos();
+        List<AuditEvent> batch = new ArrayList<>(batchSize);
+        long batchStarted = 0;
+        while (true) {
+            boolean stopping = !running;
+            if (batch.isEmpty())
+                batchStarted = System.nanoTime();
+            buffer.drainTo(batch, batchSize - batch.size());
+
+            long waited = System.nanoTime() - batchStarted;
+            if (batch.size() >= batchSize || (!batch.isEmpty() && (waited >= intervalNanos || stopping))) {
+                flush(batch);
+                batch.clear();
+            } else if (stopping) {
+                return;
+            } else {
+                LockSupport.parkNanos(this, batch.isEmpty() ? intervalNanos : intervalNanos - waited);
+            }
+        }
+    }
+
+    private void flush(List<AuditEvent> batch) {
+        List<Document> documents = batch.stream().map(AuditEvent::toDocument).toList();
+        if (!mongoDown || System.nanoTime() - retryAt >= 0) {
+            long start = System.nanoTime();
+            try {
+                insert(documents);
+                mongoFlushes.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                stored.increment(documents.size());
+                if (mongoDown) {
+                    mongoDown = false;
+                    log.info("[Audit] Mongo reachable again, replaying spilled audit events");
+                    recover();
+                }
+                return;
+            } catch (MongoException e) {
+                markDown(e);
+            } catch (RuntimeException e) {
+                log.error("[Audit] Unexpected error writing audit batch, spilling it", e);
+            }
+        }
+        spill(documents);
+    }
+
+    /** Creates the indexes (once) and replays spill files left by earlier outages or runs. */
+    private void recover() {
+        try {
+            if (!indexed) {
+                ensureIndexes();
+                indexed = true;
+            }
+            replaySpillFiles();
+        } catch (MongoException e) {
+            markDown(e);
+        }
+    }
+
+    private void markDown(MongoException e) {
+        if (!mongoDown)
+            log.warn("[Audit] Cannot write audit_log, spilling to {} (retry every {}): {}",
+                    spillDir.toAbsolutePath(), retryInterval, e.getMessage());
+        mongoDown = true;
+        retryAt = System.nanoTime() + retryInterval.toNanos();
+    }
+
+    // ── Mongo ─────────────────────────────────────────────────────────────────
+
+    private MongoCollection<Document> collection() {
+        return mongoTemplate.getCollection(COLLECTION);
+    }
+
+    private void ensureIndexes() {
+        collection().createIndex(Indexes.compoundIndex(Indexes.ascending("resourceId"), Indexes.descending("at")),
+                new IndexOptions().sparse(true));
+        collection().createIndex(Indexes.compoundIndex(Indexes.ascending("actor"), Indexes.descending("at")));
+    }
+
+    /**
+     * Unordered, so one bad document does not hold back the rest. Events
+     * already stored by an earlier, partly failed attempt are duplicate-key
+     * errors and count as written.
+     */
+    private void insert(List<Document> documents) {
+        try {
+            collection().insertMany(documents, new InsertManyOptions().ordered(false));
+        } catch (MongoBulkWriteException e) {
+            boolean onlyDuplicates = e.getWriteConcernError() == null && e.getWriteErrors().stream()
+                    .allMatch(error -> ErrorCategory.fromErrorCode(error.getCode()) == ErrorCategory.DUPLICATE_KEY);
+            if (!onlyDuplicates)
+                throw e;
+        }
+    }
+
+    // ── Spill files ───────────────────────────────────────────────────────────
+
+    private void spill(List<Document> documents) {
+        long start = System.nanoTime();
+        try {
+            if (spillFile == null) {
+                Files.createDirectories(spillDir);
+                spillFile = spillDir.resolve(SPILL_PREFIX + System.currentTimeMillis() + SPILL_SUFFIX);
+            }
+            try (BufferedWriter writer = Files.newBufferedWriter(spillFile, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                for (Document document : documents) {
+                    writer.write(document.toJson());
+                    writer.newLine();
+                }
+            }
+            spillFlushes.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            spilled.increment(documents.size());
+        } catch (IOException e) {
+            lost.increment(documents.size());
+            log.error("[Audit] Could not spill {} audit events to {}: {}", documents.size(), spillDir,
+                    e.getMessage());
+        }
+    }
+
+    /** Writes every spill file to Mongo, oldest first, deleting each once stored. */
+    private void replaySpillFiles() {
+        spillFile = null;
+        if (!Files.isDirectory(spillDir))
+            return;
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(spillDir, SPILL_PREFIX + "*" + SPILL_SUFFIX)) {
+            stream.forEach(files::add);
+        } catch (IOException e) {
+            log.warn("[Audit] Could not list spill files in {}: {}", spillDir, e.getMessage());
+            return;
+        }
+        files.sort(null);
+        for (Path file : files) {
+            try {
+                long replayed = replay(file);
+                Files.delete(file);
+                log.info("[Audit] Replayed {} spilled audit events from {}", replayed, file.getFileName());
+            } catch (IOException e) {
+                log.warn("[Audit] Could not replay {}: {}", file, e.getMessage());
+                return;
+            }
+        }
+    }
+
+    private long replay(Path file) throws IOException {
+        long replayed = 0;
+        List<Document> chunk = new ArrayList<>(batchSize);
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank())
+                    continue;
+                try {
+                    chunk.add(Document.parse(line));
+                } catch (JsonParseException e) {
+                    // Torn last line of a spill interrupted by a crash
+                    log.warn("[Audit] Skipping unreadable line in {}", file.getFileName());
+                    continue;
+                }
+                if (chunk.size() == batchSize) {
+                    insert(chunk);
+                    replayed += chunk.size();
+                    chunk.clear();
+                }
+            }
+        }
+        if (!chunk.isEmpty()) {
+            insert(chunk);
+            replayed += chunk.size();
+        }
+        stored.increment(replayed);
+        return replayed;
+    }
+}
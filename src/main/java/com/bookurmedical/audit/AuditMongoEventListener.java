@@ -0,0 +1,59 @@
+package com.bookurmedical.audit;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterLoadEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+
+/**
+ * Repository-level feed of the audit trail: every case sheet / revision
+ * document loaded, saved or deleted through Spring Data (repositories and
+ * MongoTemplate entity reads alike) is recorded as document.read / .write /
+ * .delete with its _id.
+ *
+ * Raw Document access (submit's findAndModify, the NDJSON export) raises no
+ * events; the controllers record those requests themselves.
+ */
+@Component
+public class AuditMongoEventListener extends AbstractMongoEventListener<Object> {
+
+    static final Set<String> AUDITED_COLLECTIONS = Set.of("medical_case_sheets", "medical_case_sheet_revisions");
+
+    @Autowired
+    private AuditLog auditLog;
+
+    @Override
+    public void onAfterLoad(@NonNull AfterLoadEvent<Object> event) {
+        record("document.read", event.getCollectionName(), event.getSource());
+    }
+
+    @Override
+    public void onAfterSave(@NonNull AfterSaveEvent<Object> event) {
+        record("document.write", event.getCollectionName(), event.getDocument());
+    }
+
+    @Override
+    public void onAfterDelete(@NonNull AfterDeleteEvent<Object> event) {
+        record("document.delete", event.getCollectionName(), event.getSource());
+    }
+
+    private void record(String action, String collection, Document document) {
+        if (document == null || !AUDITED_COLLECTIONS.contains(collection))
+            return;
+        Object id = document.get("_id");
+        if (id instanceof ObjectId objectId)
+            auditLog.record(action, collection, objectId.toHexString(), null);
+        else if (id instanceof String string)
+            auditLog.record(action, collection, string, null);
+        else
+            // A delete by query: name the filtered fields, not their values
+            auditLog.record(action, collection, null, "query=" + String.join(",", document.keySet()));
+    }
+}
@@ -0,0 +1,82 @@
+package com.bookurmedical.audit;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded multi-producer / single-consumer ring buffer (Vyukov's sequenced
+ * slots). Producers claim a slot with one CAS and never wait: when the
+ * buffer is full, {@link #offer} fails immediately.
+ *
+ * Each slot's sequence tells whose turn it is: equal to the claim position
+ * when free for that producer, position + 1 once published for the
+ * consumer, position + capacity after the consumer released it.
+ */
+final class AuditRingBuffer {
+
+    private final int capacity;
+    private final int mask;
+    private final AuditEvent[] slots;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+
+    /** Next position to consume; written by the consumer thread only. */
+    private volatile long head;
+
+    AuditRingBuffer(int requestedCapacity) {
+        capacity = Integer.highestOneBit(Math.max(2, requestedCapacity - 1)) << 1;
+        mask = capacity - 1;
+        slots = new AuditEvent[capacity];
+        sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++)
+            sequences.set(i, i);
+    }
+
+    /** Adds the event, or returns false at once if the buffer is full. */
+    boolean offer(AuditEvent event) {
+        long position;
+        int index;
+        while (true) {
+            position = tail.get();
+            index = (int) (position & mask);
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1))
+                    break;
+            } else if (difference < 0) {
+                return false;
+            }
+            // Another producer claimed this position first; retry with the next one
+        }
+        slots[index] = event;
+        sequences.lazySet(index, position + 1);
+        return true;
+    }
+
+    /** Moves up to {@code max} published events into {@code batch}; consumer thread only. */
+    int drainTo(List<AuditEvent> batch, int max) {
+        long position = head;
+        int drained = 0;
+        while (drained < max) {
+            int index = (int) (position & mask);
+            if (sequences.get(index) != position + 1)
+                break;
+            batch.add(slots[index]);
+            slots[index] = null;
+            sequences.lazySet(index, position + capacity);
+            position++;
+            drained++;
+        }
+        head = position;
+        return drained;
+    }
+
+    int size() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+
+    int capacity() {
+        return capacity;
+    }
+}
@@ -0,0 +1,88 @@
+package com.bookurmedical.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Creates the local {@link InvalidatingCache}s and routes invalidations to
+ * them. Invalidations come from two sources:
+ *
+ * - this instance's own saves / deletes (Spring Data lifecycle events),
+ * delivered immediately;
+ * - the change stream ({@link ChangeStreamInvalidator}), which carries every
+ * instance's writes, including updates that bypass lifecycle events.
+ */
+@Component
+public class CacheInvalidationBus {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final List<InvalidatingCache<?, ?>> caches = new CopyOnWriteArrayList<>();
+
+    /** A new cache of values derived from documents of {@code collection}. */
+    public <K, V> InvalidatingCache<K, V> newCache(String name, String collection, Duration ttl, int maxSize,
+            Function<V, String> documentIdOf) {
+        InvalidatingCache<K, V> cache = new InvalidatingCache<>(name, collection, ttl, maxSize, documentIdOf,
+                meterRegistry);
+        caches.add(cache);
+        return cache;
+    }
+
+    /** Collections that have at least one cache, i.e. the ones worth watching. */
+    Set<String> watchedCollections() {
+        return caches.stream().map(InvalidatingCache::getCollection).collect(Collectors.toSet());
+    }
+
+    public void invalidate(String collection, Object documentId) {
+        String id = idString(documentId);
+        for (InvalidatingCache<?, ?> cache : caches)
+            if (cache.getCollection().equals(collection))
+                cache.invalidate(id);
+    }
+
+    public void invalidateAll(String collection) {
+        for (InvalidatingCache<?, ?> cache : caches)
+            if (cache.getCollection().equals(collection))
+                cache.invalidateAll();
+    }
+
+    public void invalidateAll() {
+        caches.forEach(InvalidatingCache::invalidateAll);
+    }
+
+    // ── Local writes ──────────────────────────────────────────────────────────
+
+    @EventListener
+    public void onAfterSave(AfterSaveEvent<?> event) {
+        Document document = event.getDocument();
+        if (document != null && document.get("_id") != null)
+            invalidate(event.getCollectionName(), document.get("_id"));
+    }
+
+    @EventListener
+    public void onAfterDelete(AfterDeleteEvent<?> event) {
+        Object id = event.getSource().get("_id");
+        if (id instanceof ObjectId || id instanceof String)
+            invalidate(event.getCollectionName(), id);
+        else
+            invalidateAll(event.getCollectionName());
+    }
+
+    static String idString(Object documentId) {
+        return documentId instanceof ObjectId objectId ? objectId.toHexString() : String.valueOf(documentId);
+    }
+}
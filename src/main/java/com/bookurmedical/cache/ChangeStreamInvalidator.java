@@ -0,0 +1,238 @@
+package com.bookurmedical.cache;
+
+import com.mongodb.MongoException;
+import com.mongodb.MongoInterruptedException;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import org.bson.BsonDateTime;
+import org.bson.BsonDocument;
+import org.bson.BsonObjectId;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the collections that have local caches and forwards every change
+ * to {@link CacheInvalidationBus}, so a write on any instance evicts the
+ * matching entries on all of them.
+ *
+ * The stream's resume token is checkpointed per instance in
+ * change_stream_offsets. After a stream error, and after a restart, the
+ * stream resumes from the last token, so no change is missed. If it cannot
+ * resume (token past the oplog window, collection dropped, ...) or starts
+ * without a token, changes may have been missed: all caches are flushed.
+ *
+ * Change streams need a replica set; on a standalone server this logs a
+ * warning once and the caches rely on local invalidation plus their TTL.
+ */
+@Component
+@ConditionalOnProperty(name = "app.cache.change-stream.enabled", havingValue = "true", matchIfMissing = true)
+public class ChangeStreamInvalidator implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(ChangeStreamInvalidator.class);
+
+    static final String OFFSETS_COLLECTION = "change_stream_offsets";
+
+    /** ChangeStreamHistoryLost, ChangeStreamFatalError, InvalidResumeToken. */
+    private static final Set<Integer> RESUME_FAILURES = Set.of(286, 280, 260);
+    /** "The $changeStream stage is only supported on replica sets". */
+    private static final int NOT_A_REPLICA_SET = 40573;
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private CacheInvalidationBus bus;
+
+    @Value("${app.cache.change-stream.instance-id:${HOSTNAME:local}-${server.port:8081}}")
+    private String instanceId;
+
+    @Value("${app.cache.change-stream.checkpoint-interval:PT5S}")
+    private Duration checkpointInterval;
+
+    private volatile boolean running;
+    private volatile MongoChangeStreamCursor<?> cursor;
+    private Thread thread;
+
+    // Owned by the stream thread (and stop(), after joining it)
+    private BsonDocument resumeToken;
+    private BsonDocument checkpointedToken;
+    private long lastCheckpoint;
+
+    @Override
+    public void start() {
+        running = true;
+        thread = Thread.ofPlatform().daemon().name("change-stream").start(this::run);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        MongoChangeStreamCursor<?> current = cursor;
+        if (current != null)
+            current.close();
+        thread.interrupt();
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!thread.isAlive())
+            checkpoint();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // ── Stream loop ───────────────────────────────────────────────────────────
+
+    private void run() {
+        try {
+            resumeToken = loadToken();
+            checkpointedToken = resumeToken;
+        } catch (MongoException e) {
+            log.warn("[Cache] Could not load the change stream resume token: {}", e.getMessage());
+        }
+
+        long backoff = 1000;
+        while (running) {
+            try {
+                watch();
+                backoff = 1000;
+            } catch (MongoException e) {
+                if (!running || e instanceof MongoInterruptedException)
+                    return;
+                if (e.getCode() == NOT_A_REPLICA_SET) {
+                    log.warn("[Cache] Change streams need a replica set; cross-instance cache invalidation "
+                            + "is off, caches rely on local invalidation and their TTL");
+                    return;
+                }
+                if (resumeToken != null && RESUME_FAILURES.contains(e.getCode())) {
+                    log.warn("[Cache] Cannot resume change stream ({}), flushing all caches", e.getMessage());
+                    resumeToken = null;
+                    continue;
+                }
+                log.warn("[Cache] Change stream failed, retrying in {} ms: {}", backoff, e.getMessage());
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+            }
+        }
+    }
+
+    private void watch() {
+        ChangeStreamIterable<Document> stream = mongoTemplate.getDb()
+                .watch(List.of(Aggregates.match(Filters.or(
+                        Filters.in("ns.coll", bus.watchedCollections()),
+                        Filters.in("operationType", "dropDatabase", "invalidate")))))
+                .maxAwaitTime(1, TimeUnit.SECONDS);
+        boolean resuming = resumeToken != null;
+        if (resuming)
+            stream = stream.resumeAfter(resumeToken);
+
+        try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> opened = stream.cursor()) {
+            cursor = opened;
+            if (!resuming) {
+                // Whatever changed before this stream started is unknown
+                bus.invalidateAll();
+                log.info("[Cache] Change stream started (no resume token)");
+            }
+            while (running) {
+                ChangeStreamDocument<Document> change = opened.tryNext();
+                if (change != null && !apply(change))
+                    return;
+                // Also advances while idle (post-batch resume token)
+                if (opened.getResumeToken() != null)
+                    resumeToken = opened.getResumeToken();
+                if (System.nanoTime() - lastCheckpoint >= checkpointInterval.toNanos())
+                    checkpoint();
+            }
+        } finally {
+            cursor = null;
+        }
+    }
+
+    /** Forwards one change; returns false when the stream was invalidated and must be reopened. */
+    private boolean apply(ChangeStreamDocument<Document> change) {
+        String collection = change.getNamespace() != null ? change.getNamespace().getCollectionName() : null;
+        switch (change.getOperationType()) {
+            case INSERT, UPDATE, REPLACE, DELETE -> {
+                BsonValue id = change.getDocumentKey() != null ? change.getDocumentKey().get("_id") : null;
+                if (id != null)
+                    bus.invalidate(collection, documentId(id));
+                else
+                    bus.invalidateAll(collection);
+            }
+            case DROP, RENAME -> bus.invalidateAll(collection);
+            case DROP_DATABASE -> bus.invalidateAll();
+            case INVALIDATE -> {
+                log.warn("[Cache] Change stream invalidated, flushing all caches and reopening");
+                resumeToken = null;
+                return false;
+            }
+            default -> {
+            }
+        }
+        return true;
+    }
+
+    private static Object documentId(BsonValue id) {
+        if (id instanceof BsonObjectId objectId)
+            return objectId.getValue();
+        if (id instanceof BsonString string)
+            return string.getValue();
+        return id.toString();
+    }
+
+    // ── Resume token persistence ──────────────────────────────────────────────
+
+    private MongoCollection<BsonDocument> offsets() {
+        return mongoTemplate.getDb().getCollection(OFFSETS_COLLECTION, BsonDocument.class);
+    }
+
+    private BsonDocument loadToken() {
+        BsonDocument offset = offsets().find(Filters.eq("_id", instanceId)).first();
+        return offset != null && offset.isDocument("token") ? offset.getDocument("token") : null;
+    }
+
+    private void checkpoint() {
+        lastCheckpoint = System.nanoTime();
+        BsonDocument token = resumeToken;
+        if (token == null || token.equals(checkpointedToken))
+            return;
+        try {
+            offsets().replaceOne(Filters.eq("_id", instanceId),
+                    new BsonDocument("_id", new BsonString(instanceId))
+                            .append("token", token)
+                            .append("updatedAt", new BsonDateTime(System.currentTimeMillis())),
+                    new ReplaceOptions().upsert(true));
+            checkpointedToken = token;
+        } catch (MongoException e) {
+            log.warn("[Cache] Could not checkpoint change stream resume token: {}", e.getMessage());
+        }
+    }
+}
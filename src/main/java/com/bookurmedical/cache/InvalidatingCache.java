@@ -0,0 +1,165 @@
+package com.bookurmedical.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * In-process cache of values derived from one Mongo collection, kept
+ * coherent by {@link CacheInvalidationBus}: a change to a document
+ * (identified by its _id) evicts the entry built from it, on every instance.
+ *
+ * Entries also expire after {@code ttl}, as a bound on staleness while
+ * invalidations cannot be delivered (no change stream, stream down).
+ *
+ * A load that overlaps an invalidation is returned but not cached, so a value
+ * read just before a change can never outlive that change's invalidation.
+ *
+ * At maxSize, an insert first makes room: expired entries are dropped, then
+ * the ones loaded longest ago, down to 90% of maxSize, so the sweep runs once
+ * per maxSize / 10 inserts rather than on every miss. Reads stay lock-free.
+ */
+public class InvalidatingCache<K, V> {
+
+    private record Entry<V>(V value, String documentId, long expiresAt) {
+    }
+
+    private final String name;
+    private final String collection;
+    private final long ttlNanos;
+    private final int maxSize;
+    private final Function<V, String> documentIdOf;
+
+    private final Map<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final Map<String, K> keysByDocumentId = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+    private final ReentrantLock trimLock = new ReentrantLock();
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter invalidations;
+    private final Counter evictions;
+
+    InvalidatingCache(String name, String collection, Duration ttl, int maxSize, Function<V, String> documentIdOf,
+            MeterRegistry meterRegistry) {
+        this.name = name;
+        this.collection = collection;
+        this.ttlNanos = ttl.toNanos();
+        this.maxSize = maxSize;
+        this.documentIdOf = documentIdOf;
+        this.hits = Counter.builder("bookurmedical.cache.gets").tags("cache", name, "result", "hit")
+                .register(meterRegistry);
+        this.misses = Counter.builder("bookurmedical.cache.gets").tags("cache", name, "result", "miss")
+                .register(meterRegistry);
+        this.invalidations = Counter.builder("bookurmedical.cache.invalidations")
+                .description("Entries evicted because their document changed (or full flushes)")
+                .tag("cache", name)
+                .register(meterRegistry);
+        this.evictions = Counter.builder("bookurmedical.cache.evictions")
+                .description("Entries dropped to stay within max-size (expired or oldest)")
+                .tag("cache", name)
+                .register(meterRegistry);
+        Gauge.builder("bookurmedical.cache.size", entries, Map::size).tag("cache", name).register(meterRegistry);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    String getCollection() {
+        return collection;
+    }
+
+    /** The cached value, or the loader's result (cached unless null or raced by an invalidation). */
+    public V get(K key, Supplier<V> loader) {
+        Entry<V> entry = entries.get(key);
+        if (entry != null && entry.expiresAt() - System.nanoTime() > 0) {
+            hits.increment();
+            return entry.value();
+        }
+        misses.increment();
+
+        long loadedAt = generation.get();
+        V value = loader.get();
+        if (value == null || entries.size() >= maxSize && !makeRoom())
+            return value;
+        String documentId = documentIdOf.apply(value);
+        entries.put(key, new Entry<>(value, documentId, System.nanoTime() + ttlNanos));
+        keysByDocumentId.put(documentId, key);
+        // An invalidation ran while loading: the value may predate it
+        if (generation.get() != loadedAt)
+            evictKey(key);
+        return value;
+    }
+
+    /** Evicts the entry built from the document with this _id, if any. */
+    public void invalidate(String documentId) {
+        generation.incrementAndGet();
+        K key = keysByDocumentId.remove(documentId);
+        if (key != null) {
+            evictKey(key);
+            invalidations.increment();
+        }
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        entries.clear();
+        keysByDocumentId.clear();
+        invalidations.increment();
+    }
+
+    /**
+     * Trims a full cache to 90% of maxSize: expired entries first, then those
+     * closest to expiry (i.e. loaded longest ago). Returns false, and the
+     * caller skips caching, while another thread is already trimming.
+     */
+    private boolean makeRoom() {
+        if (!trimLock.tryLock())
+            return false;
+        try {
+            if (entries.size() < maxSize)
+                return true;
+            long now = System.nanoTime();
+            int target = maxSize - Math.max(1, maxSize / 10);
+            List<Map.Entry<K, Entry<V>>> live = new ArrayList<>(entries.size());
+            for (Map.Entry<K, Entry<V>> entry : entries.entrySet()) {
+                if (entry.getValue().expiresAt() - now <= 0)
+                    evict(entry.getKey(), entry.getValue());
+                else
+                    live.add(entry);
+            }
+            if (entries.size() > target) {
+                live.sort((a, b) -> Long.compare(a.getValue().expiresAt() - now, b.getValue().expiresAt() - now));
+                for (int i = 0; i < live.size() && entries.size() > target; i++)
+                    evict(live.get(i).getKey(), live.get(i).getValue());
+            }
+            return true;
+        } finally {
+            trimLock.unlock();
+        }
+    }
+
+    private void evict(K key, Entry<V> entry) {
+        if (entries.remove(key, entry)) {
+            keysByDocumentId.remove(entry.documentId(), key);
+            evictions.increment();
+        }
+    }
+
+    private void evictKey(K key) {
+        Entry<V> removed = entries.remove(key);
+        if (removed != null)
+            keysByDocumentId.remove(removed.documentId(), key);
+    }
+}
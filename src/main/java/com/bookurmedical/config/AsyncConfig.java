@@ -0,0 +1,49 @@
+package com.bookurmedical.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Async execution.
+ *
+ * With spring.threads.virtual.enabled=true, Tomcat request handling, the
+ * default @Async / MVC async executor and the scheduler all run on virtual
+ * threads — every request path here is blocking I/O (Mongo, disk, S3), so
+ * concurrency is no longer capped by a platform-thread pool.
+ *
+ * Mail is the exception: the SMTP transport holds monitors around socket
+ * I/O, which pins a virtual thread's carrier for the whole send. It keeps a
+ * small platform-thread pool in both modes.
+ *
+ * Callers of the @Async mail methods never see a mail failure: EmailService
+ * handles it (logs it, prints the dev-mode link) on the mail thread. A full mail
+ * queue drops the mail with a warning instead of failing the request.
+ */
+@Configuration
+@EnableAsync
+public class AsyncConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(AsyncConfig.class);
+
+    public static final String EMAIL_EXECUTOR = "emailExecutor";
+
+    @Bean(name = EMAIL_EXECUTOR)
+    public ThreadPoolTaskExecutor emailExecutor(@Value("${app.mail.workers:2}") int workers,
+            @Value("${app.mail.queue-capacity:500}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("mail-");
+        executor.setRejectedExecutionHandler((task, pool) -> log.warn(
+                "[Mail] Mail queue full ({} waiting), dropping an email", pool.getQueue().size()));
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+}
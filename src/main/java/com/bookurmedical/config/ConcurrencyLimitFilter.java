@@ -0,0 +1,171 @@
+package com.bookurmedical.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Sheds load on the Mongo-bound endpoint groups before it turns into
+ * threads parked on the connection pool: each group has a
+ * {@link GradientLimiter}, and requests beyond its current limit get an
+ * immediate 503 with Retry-After instead of queueing.
+ *
+ * Runs ahead of the security chain, whose JWT lookup already hits Mongo.
+ * Async requests (upload) keep their slot until the async work completes.
+ *
+ * Meters, tagged {group=auth|submit|upload}:
+ * bookurmedical.concurrency.limit — current limit
+ * bookurmedical.concurrency.in-flight — requests being processed
+ * bookurmedical.concurrency.rejected — requests answered with 503
+ */
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(ConcurrencyLimitFilter.class);
+
+    private record Group(String name, HttpMethod method, String pathPrefix, GradientLimiter limiter,
+            Counter rejected) {
+
+        boolean matches(HttpServletRequest request) {
+            return (method == null || method.matches(request.getMethod()))
+                    && request.getServletPath().startsWith(pathPrefix);
+        }
+    }
+
+    private final List<Group> groups;
+    private final long retryAfterSeconds;
+
+    public ConcurrencyLimitFilter(MeterRegistry meterRegistry, int initialLimit, int minLimit, int maxLimit,
+            double tolerance, long retryAfterSeconds) {
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.groups = List.of(
+                group("auth", null, "/api/auth/", meterRegistry, initialLimit, minLimit, maxLimit, tolerance),
+                group("submit", HttpMethod.POST, "/api/medical-history/submit", meterRegistry, initialLimit,
+                        minLimit, maxLimit, tolerance),
+                group("upload", HttpMethod.POST, "/api/medical-history/upload", meterRegistry, initialLimit,
+                        minLimit, maxLimit, tolerance));
+    }
+
+    private static Group group(String name, HttpMethod method, String pathPrefix, MeterRegistry meterRegistry,
+            int initialLimit, int minLimit, int maxLimit, double tolerance) {
+        GradientLimiter limiter = new GradientLimiter(initialLimit, minLimit, maxLimit, tolerance);
+        Gauge.builder("bookurmedical.concurrency.limit", limiter, GradientLimiter::getLimit)
+                .description("Current adaptive concurrency limit")
+                .tag("group", name)
+                .register(meterRegistry);
+        Gauge.builder("bookurmedical.concurrency.in-flight", limiter, GradientLimiter::getInFlight)
+                .description("Requests currently admitted")
+                .tag("group", name)
+                .register(meterRegistry);
+        Counter rejected = Counter.builder("bookurmedical.concurrency.rejected")
+                .description("Requests rejected with 503 because the group was at its limit")
+                .tag("group", name)
+                .register(meterRegistry);
+        return new Group(name, method, pathPrefix, limiter, rejected);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        Group group = HttpMethod.OPTIONS.matches(request.getMethod()) ? null
+                : groups.stream().filter(g -> g.matches(request)).findFirst().orElse(null);
+        if (group == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        if (!group.limiter().tryAcquire()) {
+            group.rejected().increment();
+            log.debug("[Limiter] Rejected {} {}: {} at limit {}", request.getMethod(), request.getServletPath(),
+                    group.name(), group.limiter().getLimit());
+            reject(request, response);
+            return;
+        }
+
+        long start = System.nanoTime();
+        boolean dropped = true;
+        boolean async = false;
+        try {
+            filterChain.doFilter(request, response);
+            if (request.isAsyncStarted()) {
+                // Async handler (upload returns a CompletableFuture): the work, and the real status, come later
+                request.getAsyncContext().addListener(new ReleaseOnCompletion(group.limiter(), start));
+                async = true;
+            }
+            dropped = response.getStatus() >= 500;
+        } finally {
+            if (!async)
+                group.limiter().release(start, dropped);
+        }
+    }
+
+    /**
+     * Holds an async request's slot until the response is complete, so its
+     * latency sample includes the async work and a 5xx (or a timeout / error)
+     * counts as a drop. Releases exactly once: an error is followed by a
+     * complete.
+     */
+    private static final class ReleaseOnCompletion implements AsyncListener {
+
+        private final GradientLimiter limiter;
+        private final long start;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        ReleaseOnCompletion(GradientLimiter limiter, long start) {
+            this.limiter = limiter;
+            this.start = start;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            release(!(event.getSuppliedResponse() instanceof HttpServletResponse response)
+                    || response.getStatus() >= 500);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            release(true);
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            release(true);
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // Listeners are dropped when async processing restarts (MVC's async dispatch); stay registered
+            event.getAsyncContext().addListener(this);
+        }
+
+        private void release(boolean dropped) {
+            if (released.compareAndSet(false, true))
+                limiter.release(start, dropped);
+        }
+    }
+
+    private void reject(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        // Rejected before the CORS handling in the security chain; let browsers read the 503
+        if (request.getHeader(HttpHeaders.ORIGIN) != null)
+            response.setHeader(HttpHeaders.ACCESS_CONTROL_ALLOW_ORIGIN, "*");
+        response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+        response.getWriter().write("Error: Server is busy, please retry shortly");
+    }
+}
@@ -0,0 +1,113 @@
+package com.bookurmedical.config;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Adaptive concurrency limit for one endpoint group, after the gradient
+ * algorithm of Netflix's concurrency-limits.
+ *
+ * Latencies are averaged over short windows. Each window is compared against
+ * a slowly moving baseline (exponential average of past windows):
+ *
+ * gradient = clamp(tolerance * baseline / windowLatency, 0.5, 1)
+ * newLimit = limit * gradient + sqrt(limit)
+ *
+ * So while latency stays within {@code tolerance} of the baseline the limit
+ * grows by roughly sqrt(limit) per window; once requests slow down (Mongo
+ * pool waits, a slow primary) it shrinks geometrically. Failed requests
+ * (5xx, exceptions) additionally cut the limit multiplicatively, AIMD-style,
+ * since a timeout says more than its latency. The limit only moves when the
+ * group actually used at least half of it, so quiet periods do not inflate it.
+ */
+class GradientLimiter {
+
+    private static final long WINDOW_NANOS = 100_000_000L;
+    private static final int MIN_WINDOW_SAMPLES = 10;
+    private static final double SMOOTHING = 0.2;
+    private static final double BACKOFF = 0.9;
+    private static final int BASELINE_WINDOWS = 600;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile double limit;
+
+    // Current window, guarded by this
+    private long windowStart = System.nanoTime();
+    private long windowNanos;
+    private int windowSamples;
+    private int windowMaxInFlight;
+    private boolean windowDropped;
+    private double baselineNanos;
+
+    GradientLimiter(int initialLimit, int minLimit, int maxLimit, double tolerance) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    /** Takes a slot, or returns false if the group is at its limit. */
+    boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit)
+                return false;
+            if (inFlight.compareAndSet(current, current + 1))
+                return true;
+        }
+    }
+
+    /** Releases the slot taken by {@link #tryAcquire()} and feeds the request's latency into the limit. */
+    void release(long startNanos, boolean dropped) {
+        long now = System.nanoTime();
+        int inFlightBefore = inFlight.getAndDecrement();
+        synchronized (this) {
+            windowNanos += now - startNanos;
+            windowSamples++;
+            windowMaxInFlight = Math.max(windowMaxInFlight, inFlightBefore);
+            windowDropped |= dropped;
+            if (now - windowStart >= WINDOW_NANOS && windowSamples >= MIN_WINDOW_SAMPLES) {
+                update((double) windowNanos / windowSamples);
+                windowStart = now;
+                windowNanos = 0;
+                windowSamples = 0;
+                windowMaxInFlight = 0;
+                windowDropped = false;
+            }
+        }
+    }
+
+    private void update(double latencyNanos) {
+        if (baselineNanos == 0)
+            baselineNanos = latencyNanos;
+        else if (baselineNanos / latencyNanos > 2)
+            // Latency dropped well below the baseline (recovered from an incident): catch up quickly
+            baselineNanos = (baselineNanos + latencyNanos) / 2;
+        else
+            baselineNanos += (latencyNanos - baselineNanos) / BASELINE_WINDOWS;
+
+        double current = limit;
+        double next;
+        if (windowDropped)
+            next = current * BACKOFF;
+        else if (windowMaxInFlight < current / 2)
+            return;
+        else {
+            double gradient = Math.max(0.5, Math.min(1.0, tolerance * baselineNanos / latencyNanos));
+            next = current * gradient + Math.sqrt(current);
+            next = current * (1 - SMOOTHING) + next * SMOOTHING;
+        }
+        limit = Math.max(minLimit, Math.min(maxLimit, next));
+    }
+
+    int getLimit() {
+        return (int) limit;
+    }
+
+    int getInFlight() {
+        return inFlight.get();
+    }
+}
@@ -0,0 +1,286 @@
+package com.bookurmedical.config;
+
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import com.mongodb.event.ConnectionCheckOutFailedEvent;
+import com.mongodb.event.ConnectionCheckedOutEvent;
+import com.mongodb.event.ConnectionClosedEvent;
+import com.mongodb.event.ConnectionCreatedEvent;
+import com.mongodb.event.ConnectionPoolListener;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.bson.BsonArray;
+import org.bson.BsonBinaryReader;
+import org.bson.BsonDocument;
+import org.bson.BsonNumber;
+import org.bson.BsonReader;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.RawBsonDocument;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Driver-level view of every Mongo command and connection checkout.
+ *
+ * Commands are attributed to the code that issued them: the repository
+ * method (UserRepository.findByUsername) when called through a repository,
+ * otherwise the first application frame on the stack
+ * (MedicalCaseSheetService.submit). Per method and command it records:
+ *
+ * bookurmedical.mongo.command — latency {method, command, outcome}
+ * bookurmedical.mongo.documents — documents returned / affected
+ * bookurmedical.mongo.bytes — command and reply size {direction=sent|received}
+ * bookurmedical.mongo.pool.wait — time to check out a connection {outcome}
+ * bookurmedical.mongo.pool.checkout.failures — {reason=timeout|...}
+ * bookurmedical.mongo.pool.connections — open connections, all servers
+ *
+ * Commands slower than the threshold are logged with their filter shape
+ * (field names and operators, values replaced by "?").
+ *
+ * Command and checkout times also go to the request's {@link ServerTiming}
+ * (mongo, mongo-pool): the sync driver reports on the calling thread.
+ */
+public class MongoCommandMonitor implements CommandListener, ConnectionPoolListener {
+
+    private static final Logger log = LoggerFactory.getLogger(MongoCommandMonitor.class);
+    private static final String APP_PACKAGE = "com.bookurmedical.";
+    private static final String UNATTRIBUTED = "unattributed";
+
+    /** Repository method currently executing on this thread, if any. */
+    private static final ThreadLocal<String> CURRENT_METHOD = new ThreadLocal<>();
+
+    private record Started(String method, String collection, String filterShape) {
+    }
+
+    private final MeterRegistry meterRegistry;
+    private final long slowThresholdNanos;
+    private final Map<Integer, Started> inFlight = new ConcurrentHashMap<>();
+    private final AtomicInteger openConnections = new AtomicInteger();
+
+    public MongoCommandMonitor(MeterRegistry meterRegistry, Duration slowThreshold) {
+        this.meterRegistry = meterRegistry;
+        this.slowThresholdNanos = slowThreshold.toNanos();
+        Gauge.builder("bookurmedical.mongo.pool.connections", openConnections, AtomicInteger::get)
+                .description("Open pooled connections, across all servers")
+                .register(meterRegistry);
+    }
+
+    /** Connections currently open in the driver's pools, across all servers. */
+    public int openConnections() {
+        return openConnections.get();
+    }
+
+    /** Marks the repository method running on this thread; returns the previous one to restore. */
+    static String enterMethod(String method) {
+        String previous = CURRENT_METHOD.get();
+        CURRENT_METHOD.set(method);
+        return previous;
+    }
+
+    static void exitMethod(String previous) {
+        if (previous == null)
+            CURRENT_METHOD.remove();
+        else
+            CURRENT_METHOD.set(previous);
+    }
+
+    // ── Commands ──────────────────────────────────────────────────────────────
+
+    @Override
+    public void commandStarted(CommandStartedEvent event) {
+        // Sync driver: runs on the calling thread, so the attribution is still in place
+        String method = Optional.ofNullable(CURRENT_METHOD.get()).orElseGet(MongoCommandMonitor::callerFrame);
+        BsonDocument command = event.getCommand();
+        String shape = slowThresholdNanos > 0 ? filterShape(event.getCommandName(), command) : null;
+        inFlight.put(event.getRequestId(), new Started(method, collection(event.getCommandName(), command), shape));
+
+        long sent = sizeInBytes(command);
+        if (sent >= 0)
+            bytes(method, event.getCommandName(), "sent").record(sent);
+    }
+
+    @Override
+    public void commandSucceeded(CommandSucceededEvent event) {
+        Started started = inFlight.remove(event.getRequestId());
+        if (started == null)
+            return;
+        long nanos = event.getElapsedTime(TimeUnit.NANOSECONDS);
+        String command = event.getCommandName();
+        BsonDocument reply = event.getResponse();
+        ServerTiming.record("mongo", nanos);
+
+        timer(started.method(), command, "success").record(nanos, TimeUnit.NANOSECONDS);
+        int documents = documentCount(command, reply);
+        DistributionSummary.builder("bookurmedical.mongo.documents")
+                .description("Documents returned or affected per command")
+                .tags("method", started.method(), "command", command)
+                .register(meterRegistry)
+                .record(documents);
+        long received = sizeInBytes(reply);
+        if (received >= 0)
+            bytes(started.method(), command, "received").record(received);
+
+        if (slowThresholdNanos > 0 && nanos >= slowThresholdNanos)
+            log.warn("[Mongo] Slow {} on {} by {}: {} ms, {} docs, filter {}", command, started.collection(),
+                    started.method(), TimeUnit.NANOSECONDS.toMillis(nanos), documents, started.filterShape());
+    }
+
+    @Override
+    public void commandFailed(CommandFailedEvent event) {
+        Started started = inFlight.remove(event.getRequestId());
+        if (started == null)
+            return;
+        long nanos = event.getElapsedTime(TimeUnit.NANOSECONDS);
+        ServerTiming.record("mongo", nanos);
+        timer(started.method(), event.getCommandName(), "failure").record(nanos, TimeUnit.NANOSECONDS);
+        if (slowThresholdNanos > 0 && nanos >= slowThresholdNanos)
+            log.warn("[Mongo] Slow failed {} on {} by {}: {} ms, filter {}: {}", event.getCommandName(),
+                    started.collection(), started.method(), TimeUnit.NANOSECONDS.toMillis(nanos),
+                    started.filterShape(), event.getThrowable().getMessage());
+    }
+
+    // ── Connection pool ───────────────────────────────────────────────────────
+
+    @Override
+    public void connectionCreated(ConnectionCreatedEvent event) {
+        openConnections.incrementAndGet();
+    }
+
+    @Override
+    public void connectionClosed(ConnectionClosedEvent event) {
+        openConnections.decrementAndGet();
+    }
+
+    @Override
+    public void connectionCheckedOut(ConnectionCheckedOutEvent event) {
+        long nanos = event.getElapsedTime(TimeUnit.NANOSECONDS);
+        poolWait("success").record(nanos, TimeUnit.NANOSECONDS);
+        ServerTiming.record("mongo-pool", nanos);
+    }
+
+    @Override
+    public void connectionCheckOutFailed(ConnectionCheckOutFailedEvent event) {
+        String reason = event.getReason().name().toLowerCase();
+        poolWait(reason).record(event.getElapsedTime(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+        Counter.builder("bookurmedical.mongo.pool.checkout.failures")
+                .description("Connection checkouts that failed (pool exhausted, closed, ...)")
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+        log.warn("[Mongo] Connection checkout failed ({}) after {} ms on {}", reason,
+                event.getElapsedTime(TimeUnit.MILLISECONDS), event.getServerId().getAddress());
+    }
+
+    // ── Meters ────────────────────────────────────────────────────────────────
+
+    private Timer timer(String method, String command, String outcome) {
+        return Timer.builder("bookurmedical.mongo.command")
+                .description("Mongo command latency by issuing method")
+                .tags("method", method, "command", command, "outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private DistributionSummary bytes(String method, String command, String direction) {
+        return DistributionSummary.builder("bookurmedical.mongo.bytes")
+                .description("Mongo command and reply sizes")
+                .baseUnit("bytes")
+                .tags("method", method, "command", command, "direction", direction)
+                .register(meterRegistry);
+    }
+
+    private Timer poolWait(String outcome) {
+        return Timer.builder("bookurmedical.mongo.pool.wait")
+                .description("Time spent waiting for a pooled connection")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    // ── Helpers ───────────────────────────────────────────────────────────────
+
+    /** First application frame that is not part of the infrastructure (proxies, this class). */
+    private static String callerFrame() {
+        return StackWalker.getInstance().walk(frames -> frames
+                .filter(f -> f.getClassName().startsWith(APP_PACKAGE)
+                        && !f.getClassName().startsWith(APP_PACKAGE + "config.")
+                        && !f.getClassName().contains("$$"))
+                .findFirst()
+                .map(f -> f.getClassName().substring(f.getClassName().lastIndexOf('.') + 1) + "."
+                        + f.getMethodName())
+                .orElse(UNATTRIBUTED));
+    }
+
+    private static String collection(String commandName, BsonDocument command) {
+        BsonValue target = command.get(commandName);
+        if (target instanceof BsonString name)
+            return name.getValue();
+        return command.get("collection") instanceof BsonString name ? name.getValue() : "-";
+    }
+
+    private static String filterShape(String commandName, BsonDocument command) {
+        BsonValue filter = switch (commandName) {
+            case "find" -> command.get("filter");
+            case "aggregate" -> command.get("pipeline");
+            case "count", "distinct", "findAndModify" -> command.get("query");
+            case "update" -> firstStatementField(command, "updates", "q");
+            case "delete" -> firstStatementField(command, "deletes", "q");
+            default -> null;
+        };
+        return filter == null ? "{}" : shape(filter).toString();
+    }
+
+    private static BsonValue firstStatementField(BsonDocument command, String statements, String field) {
+        return command.get(statements) instanceof BsonArray array && !array.isEmpty()
+                && array.get(0) instanceof BsonDocument first ? first.get(field) : null;
+    }
+
+    /** Keeps keys and operators, replaces values with "?" and collapses arrays to their first element. */
+    private static BsonValue shape(BsonValue value) {
+        if (value instanceof BsonDocument document) {
+            BsonDocument shaped = new BsonDocument();
+            document.forEach((key, child) -> shaped.put(key, shape(child)));
+            return shaped;
+        }
+        if (value instanceof BsonArray array)
+            return array.isEmpty() ? new BsonArray() : new BsonArray(List.of(shape(array.get(0))));
+        return new BsonString("?");
+    }
+
+    private static int documentCount(String commandName, BsonDocument reply) {
+        if (reply.get("cursor") instanceof BsonDocument cursor) {
+            BsonValue batch = cursor.containsKey("firstBatch") ? cursor.get("firstBatch") : cursor.get("nextBatch");
+            return batch instanceof BsonArray array ? array.size() : 0;
+        }
+        if ("findAndModify".equals(commandName))
+            return reply.get("value") instanceof BsonDocument ? 1 : 0;
+        return reply.get("n") instanceof BsonNumber n ? n.intValue() : 0;
+    }
+
+    /**
+     * Encoded size of a command or reply. The driver hands these over as
+     * views on the wire buffer, whose first four bytes are the document
+     * length — read that instead of re-encoding. Returns -1 when unknown.
+     */
+    private static long sizeInBytes(BsonDocument document) {
+        if (document instanceof RawBsonDocument raw)
+            return raw.getByteBuffer().remaining();
+        try (BsonReader reader = document.asBsonReader()) {
+            return reader instanceof BsonBinaryReader binary ? binary.getBsonInput().readInt32() : -1;
+        } catch (RuntimeException e) {
+            return -1;
+        }
+    }
+}
@@ -2,6 +2,9 @@ package com.bookurmedical.config;
 
 import com.bookurmedical.annotation.Encrypted;
 import com.bookurmedical.service.FieldEncryptionService;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.bson.Document;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
@@ -11,6 +14,7 @@ import org.springframework.lang.NonNull;
 import org.springframework.stereotype.Component;
 
 import java.lang.reflect.Field;
+import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -27,6 +31,10 @@ import org.slf4j.LoggerFactory;
  *
  * This means the application always works with plain-text values in memory,
  * and MongoDB only ever stores the encrypted form.
+ *
+ * Each event is timed (bookurmedical.mongo.encryption) and the number of
+ * fields processed per document recorded (bookurmedical.crypto.fields), both
+ * tagged with event=save|load and the entity type.
  */
 @Component
 public class MongoEncryptionEventListener extends AbstractMongoEventListener<Object> {
@@ -36,6 +44,9 @@ public class MongoEncryptionEventListener extends AbstractMongoEventListener<Obj
     @Autowired
     private FieldEncryptionService encryptionService;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     // ── Encrypt before save ───────────────────────────────────────────────────
 
     @Override
@@ -45,7 +56,9 @@ public class MongoEncryptionEventListener extends AbstractMongoEventListener<Obj
         if (document == null)
             return;
 
-        processFields(source.getClass(), source, document, true);
+        long start = System.nanoTime();
+        int fields = processFields(source.getClass(), source, document, true);
+        record("save", source.getClass(), start, fields);
     }
 
     // ── Decrypt after load ────────────────────────────────────────────────────
@@ -57,7 +70,9 @@ public class MongoEncryptionEventListener extends AbstractMongoEventListener<Obj
             return;
 
         Class<?> type = event.getType();
-        processDocumentFields(type, document, false);
+        long start = System.nanoTime();
+        int fields = processDocumentFields(type, document, false);
+        record("load", type, start, fields);
     }
 
     // ── Helpers ───────────────────────────────────────────────────────────────
@@ -67,12 +82,12 @@ public class MongoEncryptionEventListener extends AbstractMongoEventListener<Obj
      * For BeforeSave: read plain value from object → encrypt → write into BSON
      * document.
      */
-    private void processFields(Class<?> clazz, Object source, Document document, boolean encrypt) {
+    private int processFields(Class<?> clazz, Object source, Document document, boolean encrypt) {
         if (clazz == null || clazz == Object.class)
-            return;
+            return 0;
 
         // recurse into superclass first
-        processFields(clazz.getSuperclass(), source, document, encrypt);
+        int processedFields = processFields(clazz.getSuperclass(), source, document, encrypt);
 
         for (Field field : clazz.getDeclaredFields()) {
             if (!field.isAnnotationPresent(Encrypted.class))
@@ -92,11 +107,13 @@ public class MongoEncryptionEventListener extends AbstractMongoEventListener<Obj
                         : encryptionService.decrypt(value);
 
                 document.put(mongoFieldName, processed);
+                processedFields++;
             } catch (Exception e) {
                 log.warn("[Encryption] Skipping field '{}' on {}: {}",
                         field.getName(), clazz.getSimpleName(), e.getMessage());
             }
         }
+        return processedFields;
     }
 
     /**
@@ -104,11 +121,11 @@ public class MongoEncryptionEventListener extends AbstractMongoEventListener<Obj
      * document
      * (Spring Data will then map the decrypted document into the entity object).
      */
-    private void processDocumentFields(Class<?> clazz, Document document, boolean encrypt) {
+    private int processDocumentFields(Class<?> clazz, Document document, boolean encrypt) {
         if (clazz == null || clazz == Object.class)
-            return;
+            return 0;
 
-        processDocumentFields(clazz.getSuperclass(), document, encrypt);
+        int processedFields = processDocumentFields(clazz.getSuperclass(), document, encrypt);
 
         for (Field field : clazz.getDeclaredFields()) {
             if (!field.isAnnotationPresent(Encrypted.class))
@@ -129,11 +146,27 @@ public class MongoEncryptionEventListener extends AbstractMongoEventListener<Obj
                         : encryptionService.decrypt(value);
 
                 document.put(mongoFieldName, processed);
+                processedFields++;
             } catch (Exception e) {
                 log.warn("[Encryption] Skipping field '{}' on {} during load: {}",
                         field.getName(), clazz.getSimpleName(), e.getMessage());
             }
         }
+        return processedFields;
+    }
+
+    private void record(String event, Class<?> type, long startNanos, int fields) {
+        String entity = type.getSimpleName();
+        Timer.builder("bookurmedical.mongo.encryption")
+                .description("Encryption listener time per document")
+                .tags("event", event, "entity", entity)
+                .register(meterRegistry)
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        DistributionSummary.builder("bookurmedical.crypto.fields")
+                .description("Encrypted fields processed per document")
+                .tags("event", event, "entity", entity)
+                .register(meterRegistry)
+                .record(fields);
     }
 
     /**
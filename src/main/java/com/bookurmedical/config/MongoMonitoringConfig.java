@@ -0,0 +1,76 @@
+package com.bookurmedical.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registers {@link MongoCommandMonitor} with the Mongo client and tags every
+ * repository call so the monitor can attribute commands to it.
+ *
+ * Also bounds the connection pool wait: the driver default (2 minutes) turns
+ * pool exhaustion into requests that hang until they time out; failing fast
+ * surfaces it as checkout failures instead. The pool keeps min-size
+ * connections open once they exist (opened up front by {@link StartupWarmup}).
+ */
+@Configuration
+public class MongoMonitoringConfig {
+
+    @Bean
+    public MongoCommandMonitor mongoCommandMonitor(MeterRegistry meterRegistry,
+            @Value("${app.mongo.monitoring.slow-threshold:PT0.1S}") Duration slowThreshold) {
+        return new MongoCommandMonitor(meterRegistry, slowThreshold);
+    }
+
+    @Bean
+    public MongoClientSettingsBuilderCustomizer mongoMonitoringCustomizer(MongoCommandMonitor monitor,
+            @Value("${app.mongo.pool.max-wait:PT10S}") Duration maxWait,
+            @Value("${app.mongo.pool.min-size:10}") int minSize,
+            @Value("${app.mongo.pool.max-size:100}") int maxSize) {
+        return builder -> builder
+                .addCommandListener(monitor)
+                .applyToConnectionPoolSettings(pool -> pool
+                        .addConnectionPoolListener(monitor)
+                        .maxWaitTime(maxWait.toMillis(), TimeUnit.MILLISECONDS)
+                        .minSize(minSize)
+                        .maxSize(maxSize));
+    }
+
+    /**
+     * Wraps every repository proxy so the method being executed
+     * (UserRepository.findByUsername) is known while its commands run.
+     * Static: post-processors are instantiated before regular beans.
+     */
+    @Bean
+    public static BeanPostProcessor repositoryMethodAttribution() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof RepositoryFactoryBeanSupport<?, ?, ?> factoryBean) {
+                    factoryBean.addRepositoryFactoryCustomizer(factory -> factory.addRepositoryProxyPostProcessor(
+                            (proxy, information) -> {
+                                String repository = information.getRepositoryInterface().getSimpleName();
+                                proxy.addAdvice((MethodInterceptor) invocation -> {
+                                    String previous = MongoCommandMonitor.enterMethod(
+                                            repository + "." + invocation.getMethod().getName());
+                                    try {
+                                        return invocation.proceed();
+                                    } finally {
+                                        MongoCommandMonitor.exitMethod(previous);
+                                    }
+                                });
+                            }));
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,82 @@
+package com.bookurmedical.config;
+
+import com.bookurmedical.annotation.Encrypted;
+import com.bookurmedical.dto.CaseSheetSummary;
+import com.bookurmedical.dto.JwtResponse;
+import com.bookurmedical.dto.LoginRequest;
+import com.bookurmedical.dto.SignupRequest;
+import com.bookurmedical.dto.VitalReadingRequest;
+import com.bookurmedical.dto.VitalTrendPoint;
+import com.bookurmedical.entity.IdempotencyRecord;
+import com.bookurmedical.entity.MedicalCaseSheet;
+import com.bookurmedical.entity.MedicalCaseSheetRevision;
+import com.bookurmedical.entity.User;
+import com.bookurmedical.entity.VitalReading;
+import com.bookurmedical.service.MedicalCaseSheetService;
+import com.bookurmedical.service.OrphanedUploadSweeper;
+import com.bookurmedical.service.UserImportService;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.annotation.RegisterReflectionForBinding;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.ImportRuntimeHints;
+
+import java.util.List;
+
+/**
+ * Reflection the AOT engine cannot infer on its own, for the native image
+ * (-Pnative) and the AOT-on-JVM / CDS build (-Pcds).
+ *
+ * - Entities: MongoEncryptionEventListener scans their declared fields for
+ * {@link Encrypted} and reads them reflectively; Spring Data and the case
+ * sheet diffing go through their Lombok accessors.
+ * - DTOs and result records returned as ResponseEntity<?> bodies, which
+ * Spring cannot see from the controller signatures.
+ * - jjwt: the API module instantiates its implementation classes by name and
+ * finds the Jackson (de)serializer through ServiceLoader.
+ */
+@Configuration
+@ImportRuntimeHints(NativeHintsConfig.Hints.class)
+@RegisterReflectionForBinding({ MedicalCaseSheet.class, User.class, VitalReading.class, VitalReading.Meta.class,
+        CaseSheetSummary.class, JwtResponse.class, LoginRequest.class, SignupRequest.class,
+        VitalReadingRequest.class, VitalTrendPoint.class, MedicalCaseSheetService.SheetVersion.class,
+        MedicalCaseSheetService.SubmitResult.class, MedicalCaseSheetService.SummaryPage.class,
+        OrphanedUploadSweeper.SweepResult.class, UserImportService.ImportReport.class,
+        UserImportService.RowResult.class })
+public class NativeHintsConfig {
+
+    static final List<Class<?>> ENTITIES = List.of(MedicalCaseSheet.class, MedicalCaseSheetRevision.class,
+            User.class, VitalReading.class, VitalReading.Meta.class, IdempotencyRecord.class);
+
+    private static final List<String> JJWT_IMPLEMENTATIONS = List.of(
+            "io.jsonwebtoken.impl.DefaultClaimsBuilder",
+            "io.jsonwebtoken.impl.DefaultJwtBuilder",
+            "io.jsonwebtoken.impl.DefaultJwtHeaderBuilder",
+            "io.jsonwebtoken.impl.DefaultJwtParserBuilder",
+            "io.jsonwebtoken.impl.io.StandardCompressionAlgorithms",
+            "io.jsonwebtoken.impl.security.KeysBridge",
+            "io.jsonwebtoken.impl.security.StandardEncryptionAlgorithms",
+            "io.jsonwebtoken.impl.security.StandardHashAlgorithms",
+            "io.jsonwebtoken.impl.security.StandardKeyAlgorithms",
+            "io.jsonwebtoken.impl.security.StandardKeyOperations",
+            "io.jsonwebtoken.impl.security.StandardSecureDigestAlgorithms",
+            "io.jsonwebtoken.jackson.io.JacksonDeserializer",
+            "io.jsonwebtoken.jackson.io.JacksonSerializer");
+
+    static class Hints implements RuntimeHintsRegistrar {
+
+        @Override
+        public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+            hints.reflection().registerType(Encrypted.class);
+            for (Class<?> entity : ENTITIES)
+                hints.reflection().registerType(entity, MemberCategory.DECLARED_FIELDS,
+                        MemberCategory.INVOKE_DECLARED_CONSTRUCTORS, MemberCategory.INVOKE_PUBLIC_METHODS);
+
+            for (String type : JJWT_IMPLEMENTATIONS)
+                hints.reflection().registerTypeIfPresent(classLoader, type,
+                        MemberCategory.INVOKE_DECLARED_CONSTRUCTORS, MemberCategory.INVOKE_PUBLIC_METHODS);
+            hints.resources().registerPattern("META-INF/services/io.jsonwebtoken.io.*");
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.bookurmedical.config;
+
+import com.bookurmedical.annotation.CausalWrites;
+import com.bookurmedical.annotation.SecondaryReads;
+import com.mongodb.client.MongoClient;
+import org.springframework.aop.Advisor;
+import org.springframework.aop.support.ComposablePointcut;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.annotation.AnnotationMatchingPointcut;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Role;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+
+import java.time.Duration;
+
+/**
+ * Replica-aware read routing. Reads go to the primary unless the method
+ * issuing them is marked {@link SecondaryReads}; {@link CausalWrites}
+ * methods keep read-your-writes for their user (see
+ * {@link ReadRoutingInterceptor}).
+ *
+ * The advisor is picked up by Spring's infrastructure auto-proxying, for
+ * service classes and repository interfaces alike.
+ */
+@Configuration
+public class ReadRoutingConfig {
+
+    @Bean
+    public MongoTemplate mongoTemplate(MongoDatabaseFactory mongoDatabaseFactory, MongoConverter mongoConverter) {
+        return new RoutingMongoTemplate(mongoDatabaseFactory, mongoConverter);
+    }
+
+    /** Static, and the client is resolved lazily: advisors are created while post-processors are still set up. */
+    @Bean
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    public static Advisor readRoutingAdvisor(ObjectProvider<MongoClient> mongoClient,
+            @Value("${app.mongo.read.max-staleness:PT90S}") Duration maxStaleness,
+            @Value("${app.mongo.read.causal-window:PT2M}") Duration causalWindow,
+            @Value("${app.mongo.read.secondary-reads.enabled:true}") boolean enabled) {
+        ComposablePointcut pointcut = new ComposablePointcut(
+                AnnotationMatchingPointcut.forMethodAnnotation(SecondaryReads.class))
+                .union(AnnotationMatchingPointcut.forMethodAnnotation(CausalWrites.class));
+        return new DefaultPointcutAdvisor(pointcut,
+                new ReadRoutingInterceptor(mongoClient, maxStaleness, causalWindow, enabled));
+    }
+}
@@ -0,0 +1,128 @@
+package com.bookurmedical.config;
+
+import com.bookurmedical.annotation.CausalWrites;
+import com.bookurmedical.annotation.SecondaryReads;
+import com.mongodb.ClientSessionOptions;
+import com.mongodb.ReadPreference;
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.MongoClient;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.bson.BsonDocument;
+import org.bson.BsonTimestamp;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Binds the read route for {@link SecondaryReads} / {@link CausalWrites}
+ * methods (see {@link RoutingMongoTemplate}).
+ *
+ * CausalWrites: runs the method in a causally consistent session and keeps
+ * the session's operation and cluster time for the current user.
+ *
+ * SecondaryReads: reads go secondaryPreferred with max staleness. If the
+ * user wrote within the causal window, they run in a causally consistent
+ * session advanced to that write, so a secondary waits until it has applied
+ * it (afterClusterTime) instead of serving an older state. Past the window
+ * any eligible secondary is known to have caught up.
+ *
+ * Write times are kept in memory, so read-your-writes holds per instance.
+ * The outermost annotated method decides the route for nested calls.
+ */
+public class ReadRoutingInterceptor implements MethodInterceptor {
+
+    private static final ClientSessionOptions CAUSAL = ClientSessionOptions.builder()
+            .causallyConsistent(true)
+            .build();
+
+    private record LastWrite(BsonTimestamp operationTime, BsonDocument clusterTime, Instant expires) {
+    }
+
+    private final ObjectProvider<MongoClient> mongoClient;
+    private final ReadPreference secondaryPreferred;
+    private final Duration causalWindow;
+    private final boolean enabled;
+    private final Map<String, LastWrite> lastWrites = new ConcurrentHashMap<>();
+
+    public ReadRoutingInterceptor(ObjectProvider<MongoClient> mongoClient, Duration maxStaleness,
+            Duration causalWindow, boolean enabled) {
+        // The driver rejects max staleness below 90 seconds
+        if (maxStaleness.toSeconds() < 90)
+            throw new IllegalArgumentException("app.mongo.read.max-staleness must be at least 90 seconds");
+        this.mongoClient = mongoClient;
+        this.secondaryPreferred = ReadPreference.secondaryPreferred(maxStaleness.toSeconds(), TimeUnit.SECONDS);
+        this.causalWindow = causalWindow;
+        this.enabled = enabled;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        if (RoutingMongoTemplate.currentRoute() != null)
+            return invocation.proceed();
+
+        String user = currentUser();
+        if (AnnotatedElementUtils.hasAnnotation(invocation.getMethod(), CausalWrites.class))
+            return user != null ? proceedWriting(invocation, user) : invocation.proceed();
+        if (!enabled)
+            return invocation.proceed();
+
+        LastWrite lastWrite = user != null ? lastWrites.get(user) : null;
+        if (lastWrite != null && lastWrite.expires().isBefore(Instant.now())) {
+            lastWrites.remove(user, lastWrite);
+            lastWrite = null;
+        }
+        if (lastWrite == null)
+            return proceed(invocation, new RoutingMongoTemplate.Route(secondaryPreferred, null));
+
+        try (ClientSession session = mongoClient.getObject().startSession(CAUSAL)) {
+            session.advanceClusterTime(lastWrite.clusterTime());
+            session.advanceOperationTime(lastWrite.operationTime());
+            return proceed(invocation, new RoutingMongoTemplate.Route(secondaryPreferred, session));
+        }
+    }
+
+    private Object proceedWriting(MethodInvocation invocation, String user) throws Throwable {
+        try (ClientSession session = mongoClient.getObject().startSession(CAUSAL)) {
+            try {
+                return proceed(invocation, new RoutingMongoTemplate.Route(null, session));
+            } finally {
+                // Also after a failure: some of the writes may have been applied
+                if (session.getOperationTime() != null && session.getClusterTime() != null)
+                    lastWrites.merge(user,
+                            new LastWrite(session.getOperationTime(), session.getClusterTime(),
+                                    Instant.now().plus(causalWindow)),
+                            (old, next) -> next.operationTime().compareTo(old.operationTime()) >= 0 ? next
+                                    : new LastWrite(old.operationTime(), old.clusterTime(), next.expires()));
+            }
+        } finally {
+            if (lastWrites.size() > 10_000)
+                lastWrites.values().removeIf(write -> write.expires().isBefore(Instant.now()));
+        }
+    }
+
+    private static Object proceed(MethodInvocation invocation, RoutingMongoTemplate.Route route) throws Throwable {
+        RoutingMongoTemplate.Route previous = RoutingMongoTemplate.bind(route);
+        try {
+            return invocation.proceed();
+        } finally {
+            RoutingMongoTemplate.restore(previous);
+        }
+    }
+
+    private static String currentUser() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()
+                || authentication instanceof AnonymousAuthenticationToken)
+            return null;
+        return authentication.getName();
+    }
+}
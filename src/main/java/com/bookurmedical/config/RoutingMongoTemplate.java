@@ -0,0 +1,65 @@
+package com.bookurmedical.config;
+
+import com.mongodb.ReadPreference;
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import org.bson.Document;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+
+/**
+ * MongoTemplate that applies the read route bound to the current thread by
+ * {@link ReadRoutingInterceptor}: its read preference for every collection
+ * used, and its session (if any) for every command.
+ *
+ * Repositories run on this template too, so the route covers derived
+ * queries as well. A read preference set on an individual Query still wins.
+ */
+public class RoutingMongoTemplate extends MongoTemplate {
+
+    /** Read preference (null = template default, the primary) and optional causally consistent session. */
+    record Route(ReadPreference readPreference, ClientSession session) {
+    }
+
+    private static final ThreadLocal<Route> ROUTE = new ThreadLocal<>();
+
+    public RoutingMongoTemplate(MongoDatabaseFactory mongoDbFactory, MongoConverter mongoConverter) {
+        super(mongoDbFactory, mongoConverter);
+    }
+
+    static Route currentRoute() {
+        return ROUTE.get();
+    }
+
+    /** Binds a route to this thread; returns the previous one to restore. */
+    static Route bind(Route route) {
+        Route previous = ROUTE.get();
+        ROUTE.set(route);
+        return previous;
+    }
+
+    static void restore(Route previous) {
+        if (previous == null)
+            ROUTE.remove();
+        else
+            ROUTE.set(previous);
+    }
+
+    @Override
+    protected MongoDatabase doGetDatabase() {
+        Route route = ROUTE.get();
+        if (route != null && route.session() != null)
+            return getMongoDatabaseFactory().withSession(route.session()).getMongoDatabase();
+        return super.doGetDatabase();
+    }
+
+    @Override
+    protected MongoCollection<Document> prepareCollection(MongoCollection<Document> collection) {
+        Route route = ROUTE.get();
+        if (route != null && route.readPreference() != null)
+            return collection.withReadPreference(route.readPreference());
+        return super.prepareCollection(collection);
+    }
+}
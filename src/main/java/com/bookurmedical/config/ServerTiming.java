@@ -0,0 +1,76 @@
+package com.bookurmedical.config;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.StringJoiner;
+
+/**
+ * Per-request latency breakdown, emitted by {@link ServerTimingFilter} as a
+ * Server-Timing header and a log line.
+ *
+ * Layers that already time themselves (Mongo commands, crypto, password
+ * hashing, JWT, mail) report the same duration through {@link #record}.
+ * Outside a sampled request — on other threads, or with timing disabled —
+ * that is a single ThreadLocal read.
+ *
+ * Metrics may overlap (user-lookup includes its mongo and decrypt time), so
+ * they are not meant to add up to total.
+ */
+public final class ServerTiming {
+
+    private static final ThreadLocal<ServerTiming> CURRENT = new ThreadLocal<>();
+
+    private static final class Metric {
+        long nanos;
+        int count;
+    }
+
+    private final long startNanos = System.nanoTime();
+    // Only touched by the request thread
+    private final Map<String, Metric> metrics = new LinkedHashMap<>();
+
+    private ServerTiming() {
+    }
+
+    /** Adds one operation of {@code nanos} to {@code metric} if the current request is being timed. */
+    public static void record(String metric, long nanos) {
+        ServerTiming timing = CURRENT.get();
+        if (timing != null) {
+            Metric entry = timing.metrics.computeIfAbsent(metric, name -> new Metric());
+            entry.nanos += nanos;
+            entry.count++;
+        }
+    }
+
+    static ServerTiming begin() {
+        ServerTiming timing = new ServerTiming();
+        CURRENT.set(timing);
+        return timing;
+    }
+
+    static void end() {
+        CURRENT.remove();
+    }
+
+    /** {@code mongo;dur=12.41;desc="3 ops", password;dur=81.02, total;dur=97.35} */
+    String header() {
+        StringJoiner header = new StringJoiner(", ");
+        metrics.forEach((name, metric) -> header.add(name + ";dur=" + millis(metric.nanos)
+                + (metric.count > 1 ? ";desc=\"" + metric.count + " ops\"" : "")));
+        header.add("total;dur=" + millis(System.nanoTime() - startNanos));
+        return header.toString();
+    }
+
+    /** {@code total=97.35ms mongo=12.41ms/3 password=81.02ms/1} */
+    String logFields() {
+        StringJoiner fields = new StringJoiner(" ");
+        fields.add("total=" + millis(System.nanoTime() - startNanos) + "ms");
+        metrics.forEach((name, metric) -> fields.add(name + "=" + millis(metric.nanos) + "ms/" + metric.count));
+        return fields.toString();
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.2f", nanos / 1_000_000.0);
+    }
+}
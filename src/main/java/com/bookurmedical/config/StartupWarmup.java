@@ -0,0 +1,179 @@
+package com.bookurmedical.config;
+
+import com.bookurmedical.entity.User;
+import com.bookurmedical.repository.UserRepository;
+import com.bookurmedical.security.jwt.JwtUtils;
+import com.bookurmedical.security.services.UserDetailsImpl;
+import com.bookurmedical.service.FieldEncryptionService;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Warms the signup / signin path before the instance reports ready, so the
+ * first requests after a deploy do not pay for it:
+ *
+ * - waits until app.mongo.pool.min-size connections are open (concurrent
+ * pings make the pool open them now rather than in its background
+ * maintenance pass) and runs every UserRepository finder once, loading its
+ * index and caching the query plan;
+ * - runs AES-GCM, HMAC and blind-index operations, JWT signing / verification
+ * and a few password hashes, which initialises the JCA providers and gets
+ * the hot loops JIT-compiled.
+ *
+ * Spring Boot only moves readiness to ACCEPTING_TRAFFIC after all
+ * ApplicationRunners have finished, so /actuator/health/readiness stays DOWN
+ * until this returns. A failing step (Mongo unreachable, ...) is logged and
+ * skipped rather than keeping the instance out of rotation.
+ *
+ * The warm-up operations are recorded by the bookurmedical.crypto / .jwt /
+ * .password timers like any other call.
+ */
+@Component
+@ConditionalOnProperty(name = "app.warmup.enabled", havingValue = "true", matchIfMissing = true)
+public class StartupWarmup implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(StartupWarmup.class);
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private MongoCommandMonitor mongoCommandMonitor;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private FieldEncryptionService encryptionService;
+
+    @Autowired
+    private JwtUtils jwtUtils;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Value("${app.mongo.pool.min-size:10}")
+    private int poolMinSize;
+
+    @Value("${app.warmup.timeout:PT30S}")
+    private Duration timeout;
+
+    @Value("${app.warmup.crypto-iterations:5000}")
+    private int cryptoIterations;
+
+    @Value("${app.warmup.jwt-iterations:2000}")
+    private int jwtIterations;
+
+    @Value("${app.warmup.password-iterations:3}")
+    private int passwordIterations;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        long start = System.nanoTime();
+        // Without a reachable Mongo every finder would wait out server selection
+        if (step("Mongo pool", this::openConnections))
+            step("UserRepository finders", this::runFinders);
+        step("Field encryption", this::exerciseCrypto);
+        step("JWT", this::exerciseJwt);
+        step("Password encoder", this::exercisePasswordEncoder);
+        log.info("[Warmup] Done in {} ms, reporting ready", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private static boolean step(String name, Runnable step) {
+        long start = System.nanoTime();
+        try {
+            step.run();
+            log.info("[Warmup] {}: {} ms", name, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return true;
+        } catch (RuntimeException e) {
+            log.warn("[Warmup] {} skipped: {}", name, e.getMessage());
+            return false;
+        }
+    }
+
+    // ── Mongo ─────────────────────────────────────────────────────────────────
+
+    private void openConnections() {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> pings = new ArrayList<>();
+            for (int i = 0; i < poolMinSize; i++)
+                pings.add(executor.submit(() -> mongoTemplate.executeCommand(new Document("ping", 1))));
+            for (Future<?> ping : pings)
+                ping.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            // Pings that found a free connection did not open one; the pool tops up to min-size itself
+            while (mongoCommandMonitor.openConnections() < poolMinSize && System.nanoTime() < deadline)
+                Thread.sleep(50);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted", e);
+        } catch (Exception e) {
+            throw new IllegalStateException(e.getCause() != null ? e.getCause().getMessage() : e.toString(), e);
+        }
+        log.info("[Warmup] {} Mongo connections open", mongoCommandMonitor.openConnections());
+    }
+
+    /** Lookups for values that cannot exist: they only walk the indexes. */
+    private void runFinders() {
+        String missing = "warmup-" + UUID.randomUUID();
+        String missingHash = encryptionService.encryptDeterministic(missing);
+        userRepository.findByUsername(missing);
+        userRepository.existsByUsername(missing);
+        userRepository.existsByEmailHash(missingHash);
+        userRepository.findByEmailHash(missingHash);
+        userRepository.findByResetTokenHash(missingHash);
+        userRepository.findByEmailVerificationTokenHash(missingHash);
+    }
+
+    // ── Crypto ────────────────────────────────────────────────────────────────
+
+    private void exerciseCrypto() {
+        String value = "warmup.patient+" + UUID.randomUUID() + "@example.org";
+        for (int i = 0; i < cryptoIterations; i++) {
+            encryptionService.decrypt(encryptionService.encrypt(value));
+            encryptionService.encryptDeterministic(value);
+        }
+        for (int i = 0; i < cryptoIterations / 10; i++)
+            encryptionService.blindIndexTokens("warmup", "Type 2 diabetes mellitus, hypertension", true);
+    }
+
+    private void exerciseJwt() {
+        User user = new User();
+        user.setId("warmup");
+        user.setUsername("warmup");
+        user.setRole("USER");
+        UserDetailsImpl details = UserDetailsImpl.build(user);
+        UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(details, null,
+                details.getAuthorities());
+        for (int i = 0; i < jwtIterations; i++) {
+            String token = jwtUtils.generateJwtToken(authentication);
+            if (jwtUtils.validateJwtToken(token))
+                jwtUtils.getUserNameFromJwtToken(token);
+        }
+    }
+
+    private void exercisePasswordEncoder() {
+        String hash = passwordEncoder.encode("warmup-password");
+        for (int i = 1; i < passwordIterations; i++)
+            passwordEncoder.matches("warmup-password", hash);
+    }
+}
@@ -0,0 +1,68 @@
+package com.bookurmedical.config;
+
+import com.bookurmedical.storage.BlobStore;
+import com.bookurmedical.storage.LocalBlobStore;
+import com.bookurmedical.storage.S3BlobStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.StringUtils;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3AsyncClientBuilder;
+
+import java.net.URI;
+import java.nio.file.Paths;
+
+/**
+ * Selects the {@link BlobStore} used for uploaded files.
+ *
+ * app.storage.type=local (default) → files under app.storage.local.root
+ * app.storage.type=s3 → S3-compatible bucket; set app.storage.s3.endpoint
+ * (and path-style access) to point at MinIO or another compatible store.
+ */
+@Configuration
+public class StorageConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "app.storage.type", havingValue = "local", matchIfMissing = true)
+    public BlobStore localBlobStore(@Value("${app.storage.local.root:uploads}") String root) {
+        return new LocalBlobStore(Paths.get(root));
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "app.storage.type", havingValue = "s3")
+    public S3AsyncClient s3AsyncClient(
+            @Value("${app.storage.s3.region:us-east-1}") String region,
+            @Value("${app.storage.s3.endpoint:}") String endpoint,
+            @Value("${app.storage.s3.path-style-access:false}") boolean pathStyle,
+            @Value("${app.storage.s3.access-key:}") String accessKey,
+            @Value("${app.storage.s3.secret-key:}") String secretKey) {
+        AwsCredentialsProvider credentials = StringUtils.hasText(accessKey)
+                ? StaticCredentialsProvider.create(AwsBasicCredentials.create(accessKey, secretKey))
+                : DefaultCredentialsProvider.builder().build();
+
+        S3AsyncClientBuilder builder = S3AsyncClient.builder()
+                .region(Region.of(region))
+                .credentialsProvider(credentials)
+                .forcePathStyle(pathStyle);
+        if (StringUtils.hasText(endpoint))
+            builder.endpointOverride(URI.create(endpoint));
+        return builder.build();
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "app.storage.type", havingValue = "s3")
+    public BlobStore s3BlobStore(S3AsyncClient s3AsyncClient,
+            @Value("${app.storage.s3.bucket}") String bucket,
+            @Value("${app.storage.s3.staging-dir:${java.io.tmpdir}/bookurmedical-staging}") String stagingDir,
+            @Value("${app.storage.s3.part-size:8388608}") long partSize,
+            @Value("${app.storage.s3.parallel-parts:4}") int parallelParts) {
+        return new S3BlobStore(s3AsyncClient, bucket, Paths.get(stagingDir), partSize, parallelParts);
+    }
+}
@@ -0,0 +1,41 @@
+package com.bookurmedical.controller;
+
+import com.bookurmedical.audit.AuditLog;
+import com.bookurmedical.service.UserService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@CrossOrigin(origins = "*", maxAge = 3600)
+@RestController
+@RequestMapping("/api/admin/users")
+public class AdminUserController {
+
+    @Autowired
+    UserService userService;
+
+    @Autowired
+    AuditLog auditLog;
+
+    /**
+     * The only way to grant DOCTOR / CLINICIAN (or revoke them back to USER):
+     * signup and bulk import always create USER accounts.
+     */
+    @PutMapping("/{id}/role")
+    public ResponseEntity<?> changeRole(@PathVariable String id, @RequestBody Map<String, String> request) {
+        String role = request.get("role");
+        try {
+            return userService.changeRole(id, role)
+                    .<ResponseEntity<?>>map(user -> {
+                        auditLog.record("user.role", "users", user.getId(), "role=" + user.getRole());
+                        return ResponseEntity.ok(Map.of("id", user.getId(), "username", user.getUsername(),
+                                "role", user.getRole()));
+                    })
+                    .orElseGet(() -> ResponseEntity.notFound().build());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.bookurmedical.controller;
+
+import com.bookurmedical.audit.AuditLog;
+import com.bookurmedical.dto.CaseSheetSummary;
+import com.bookurmedical.service.CaseSheetExportService;
+import com.bookurmedical.service.CaseSheetExportService.ExportResult;
+import com.bookurmedical.service.MedicalCaseSheetService;
+import com.bookurmedical.service.MedicalCaseSheetService.SummaryPage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+@CrossOrigin(origins = "*", maxAge = 3600)
+@RestController
+@RequestMapping("/api/clinician")
+public class ClinicianController {
+
+    private static final Logger log = LoggerFactory.getLogger(ClinicianController.class);
+    private static final int MAX_RESULTS = 100;
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    @Autowired
+    MedicalCaseSheetService caseSheetService;
+
+    @Autowired
+    CaseSheetExportService exportService;
+
+    @Autowired
+    AuditLog auditLog;
+
+    /** Worklist of case sheets, newest first; pass {@code nextCursor} back to get the next page. */
+    @GetMapping("/case-sheets")
+    public ResponseEntity<?> listCaseSheets(@RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", defaultValue = "50") int limit) {
+        try {
+            SummaryPage page = caseSheetService.list(cursor, Math.max(1, Math.min(limit, MAX_RESULTS)));
+            auditLog.record("case_sheet.list", "medical_case_sheets", null, "results=" + page.items().size());
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Case sheets whose diagnoses / allergies contain every given word
+     * (or a word starting with it when {@code prefix=true}).
+     */
+    @GetMapping("/case-sheets/search")
+    public ResponseEntity<?> searchCaseSheets(@RequestParam(value = "diagnosis", required = false) String diagnosis,
+            @RequestParam(value = "allergy", required = false) String allergy,
+            @RequestParam(value = "prefix", defaultValue = "false") boolean prefix,
+            @RequestParam(value = "limit", defaultValue = "50") int limit) {
+        try {
+            List<CaseSheetSummary> results = caseSheetService.search(diagnosis, allergy, prefix,
+                    Math.max(1, Math.min(limit, MAX_RESULTS)));
+            auditLog.record("case_sheet.search", "medical_case_sheets", null, "results=" + results.size());
+            return ResponseEntity.ok(results);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Error: " + e.getMessage());
+        }
+    }
+
+    /** Streams every case sheet as NDJSON, optionally gzip-compressed. */
+    @GetMapping("/case-sheets/export")
+    public ResponseEntity<StreamingResponseBody> exportCaseSheets(
+            @RequestParam(value = "gzip", defaultValue = "false") boolean gzip) {
+        String fileName = gzip ? "case-sheets.ndjson.gz" : "case-sheets.ndjson";
+        // Recorded here: the body is streamed outside the caller's security context
+        auditLog.record("case_sheet.export", "medical_case_sheets", null, null);
+        StreamingResponseBody body = response -> {
+            AtomicLong written = new AtomicLong();
+            try (OutputStream out = gzip
+                    ? new GZIPOutputStream(response, 64 * 1024)
+                    : new BufferedOutputStream(response, 64 * 1024)) {
+                ExportResult exported = exportService.export(out, written);
+                log.info("[Export] Streamed {} case sheets ({} with undecryptable fields)", exported.sheets(),
+                        exported.incompleteSheets());
+            } catch (IOException | RuntimeException e) {
+                log.warn("[Export] Failed after {} case sheets: {}", written.get(), e.getMessage());
+                throw e;
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(gzip ? MediaType.parseMediaType("application/gzip") : NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(fileName).build().toString())
+                .body(body);
+    }
+}
@@ -1,75 +1,405 @@
 
 package com.bookurmedical.controller;
 
+import com.bookurmedical.audit.AuditLog;
 import com.bookurmedical.entity.MedicalCaseSheet;
 import com.bookurmedical.entity.User;
 import com.bookurmedical.repository.MedicalCaseSheetRepository;
 import com.bookurmedical.repository.UserRepository;
+import com.bookurmedical.service.FileDownloadService;
+import com.bookurmedical.service.FileEncryptionService;
+import com.bookurmedical.service.IdempotencyService;
+import com.bookurmedical.service.MedicalCaseSheetHistoryService;
+import com.bookurmedical.service.MedicalCaseSheetService;
+import com.bookurmedical.service.MedicalCaseSheetService.SheetVersion;
+import com.bookurmedical.service.MedicalCaseSheetService.SubmitResult;
+import com.bookurmedical.service.PreviewService;
+import com.bookurmedical.storage.BlobStore;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.util.UriUtils;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
 @RestController
 @RequestMapping("/api/medical-history")
 public class MedicalHistoryController {
 
+    private static final Logger log = LoggerFactory.getLogger(MedicalHistoryController.class);
+
     @Autowired
     MedicalCaseSheetRepository medicalCaseSheetRepository;
 
     @Autowired
     UserRepository userRepository;
 
-    private final Path fileStorageLocation = Paths.get("uploads").toAbsolutePath().normalize();
+    @Autowired
+    MedicalCaseSheetService medicalCaseSheetService;
+
+    @Autowired
+    MedicalCaseSheetHistoryService medicalCaseSheetHistoryService;
+
+    @Autowired
+    FileDownloadService fileDownloadService;
 
-    public MedicalHistoryController() {
+    @Autowired
+    FileEncryptionService fileEncryptionService;
+
+    @Autowired
+    BlobStore blobStore;
+
+    @Autowired
+    PreviewService previewService;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    IdempotencyService idempotencyService;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Autowired
+    AuditLog auditLog;
+
+    /**
+     * With an Idempotency-Key header, a retried submit returns the first
+     * attempt's response instead of writing again.
+     */
+    @PostMapping("/submit")
+    public ResponseEntity<?> submitMedicalHistory(@RequestBody MedicalCaseSheet medicalCaseSheet,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey)
+            throws JsonProcessingException {
+        if (idempotencyKey == null)
+            return submit(medicalCaseSheet);
         try {
-            Files.createDirectories(this.fileStorageLocation);
-        } catch (Exception ex) {
-            throw new RuntimeException("Could not create the directory where the uploaded files will be stored.", ex);
+            IdempotencyService.validateKey(idempotencyKey);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Error: " + e.getMessage());
         }
-    }
 
-    @PostMapping("/submit")
-    public ResponseEntity<?> submitMedicalHistory(@RequestBody MedicalCaseSheet medicalCaseSheet) {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String username = ((UserDetails) authentication.getPrincipal()).getUsername();
+        String fingerprint = IdempotencyService.fingerprint(objectMapper.writeValueAsBytes(medicalCaseSheet));
+        return idempotencyService.execute(currentUsername(), "submit", idempotencyKey, fingerprint,
+                () -> CompletableFuture.completedFuture(submit(medicalCaseSheet))).join();
+    }
 
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("Error: User not found."));
+    private ResponseEntity<String> submit(MedicalCaseSheet medicalCaseSheet) {
+        User user = currentUser();
 
-        medicalCaseSheet.setUserId(user.getId());
-        medicalCaseSheetRepository.save(medicalCaseSheet);
+        // Upserts the user's single case sheet, writing only the changed fields
+        SubmitResult result = medicalCaseSheetService.submit(user.getId(), medicalCaseSheet);
+        auditLog.record("case_sheet.submit", "medical_case_sheets", result.id(),
+                "revision=" + result.revision() + " fields=" + String.join(",", result.changedFields()));
 
         // Update user profile status
-        user.setProfileCompleted(true);
-        userRepository.save(user);
+        if (!user.isProfileCompleted()) {
+            user.setProfileCompleted(true);
+            userRepository.save(user);
+        }
 
         return ResponseEntity.ok("Medical history submitted successfully!");
     }
 
+    /**
+     * The caller's current case sheet, limited to the requested fields / groups
+     * (e.g. ?fields=vitals,diagnosis; all fields when omitted). Only the
+     * selected fields are loaded and decrypted. Responses carry an ETag built
+     * from the sheet revision; a matching If-None-Match gets a 304 after an
+     * index-only version lookup.
+     */
+    @GetMapping
+    public ResponseEntity<?> getCaseSheet(@RequestParam(value = "fields", required = false) List<String> fields,
+            WebRequest webRequest) {
+        Set<String> selection;
+        try {
+            selection = medicalCaseSheetService.resolveFields(fields != null && !fields.isEmpty()
+                    ? fields
+                    : MedicalCaseSheetService.FIELD_GROUPS.keySet());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Error: " + e.getMessage());
+        }
+
+        User user = currentUser();
+        if (webRequest.getHeader(HttpHeaders.IF_NONE_MATCH) != null) {
+            Optional<SheetVersion> version = medicalCaseSheetService.currentVersion(user.getId());
+            if (version.isPresent() && webRequest.checkNotModified(caseSheetEtag(version.get(), selection)))
+                return null; // 304 Not Modified
+        }
+
+        Optional<Map<String, Object>> sheet = medicalCaseSheetService.findProjected(user.getId(), selection);
+        if (sheet.isEmpty())
+            return ResponseEntity.notFound().build();
+
+        SheetVersion version = new SheetVersion((String) sheet.get().get("id"), (Long) sheet.get().get("revision"));
+        auditLog.record("case_sheet.view", "medical_case_sheets", version.id(),
+                "fields=" + String.join(",", selection));
+        return ResponseEntity.ok()
+                .eTag(caseSheetEtag(version, selection))
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .body(sheet.get());
+    }
+
+    /**
+     * Preview status of each file on the caller's case sheet, keyed by field
+     * name: {"xrayFile": {"status": "ready", "url": ...}}. Kept apart from the
+     * case sheet GET because readiness changes without a new revision and
+     * checking it costs a blob store lookup per file.
+     */
+    @GetMapping("/previews")
+    public ResponseEntity<?> getPreviews() {
+        User user = currentUser();
+        Optional<Map<String, Object>> sheet = medicalCaseSheetService.findProjected(user.getId(),
+                Set.copyOf(MedicalCaseSheet.FILE_FIELDS));
+        if (sheet.isEmpty())
+            return ResponseEntity.notFound().build();
+
+        auditLog.record("case_sheet.previews", "medical_case_sheets", (String) sheet.get().get("id"), null);
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noStore())
+                .body(previews(sheet.get()));
+    }
+
+    /**
+     * The caller's case sheet as of a past revision ({@code version}) or point
+     * in time ({@code at}, ISO-8601 instant).
+     */
+    @GetMapping("/history")
+    public ResponseEntity<?> getHistory(@RequestParam(value = "version", required = false) Long version,
+            @RequestParam(value = "at", required = false) Instant at) {
+        if ((version == null) == (at == null))
+            return ResponseEntity.badRequest().body("Error: Specify exactly one of 'version' or 'at'.");
+
+        User user = currentUser();
+        Optional<MedicalCaseSheet> current = medicalCaseSheetRepository.findFirstByUserIdOrderByIdDesc(user.getId());
+        if (current.isEmpty())
+            return ResponseEntity.notFound().build();
+
+        String caseSheetId = current.get().getId();
+        Optional<MedicalCaseSheet> historical = version != null
+                ? medicalCaseSheetHistoryService.asOfRevision(caseSheetId, version)
+                : medicalCaseSheetHistoryService.asOf(caseSheetId, at);
+        if (historical.isPresent())
+            auditLog.record("case_sheet.history", "medical_case_sheets", caseSheetId,
+                    version != null ? "version=" + version : "at=" + at);
+        return historical.<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Encrypts the upload into a local staging file, then hands it to the
+     * blob store. The request thread is released while the store completes
+     * the write (e.g. an S3 multipart upload). Latency and size are recorded
+     * as bookurmedical.upload / bookurmedical.upload.bytes.
+     *
+     * With an Idempotency-Key header, a retried upload (same file name, size,
+     * type and SHA-256 of the content) returns the stored name of the first
+     * copy instead of storing another one; a different file under the same
+     * key gets 422.
+     */
     @PostMapping("/upload")
-    public ResponseEntity<String> uploadFile(@RequestParam("file") MultipartFile file) {
+    public CompletableFuture<ResponseEntity<String>> uploadFile(@RequestParam("file") MultipartFile file,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        if (idempotencyKey == null)
+            return upload(file);
         try {
-            // Normalize file name
-            String fileName = UUID.randomUUID().toString() + "_" + file.getOriginalFilename();
-            Path targetLocation = this.fileStorageLocation.resolve(fileName);
-            Files.copy(file.getInputStream(), targetLocation);
+            IdempotencyService.validateKey(idempotencyKey);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body("Error: " + e.getMessage()));
+        }
+
+        String fingerprint;
+        try (InputStream in = file.getInputStream()) {
+            fingerprint = IdempotencyService.fingerprint(file.getOriginalFilename(),
+                    String.valueOf(file.getSize()), file.getContentType(), IdempotencyService.contentDigest(in));
+        } catch (IOException e) {
+            return CompletableFuture.completedFuture(uploadFailed(file));
+        }
+        return idempotencyService.execute(currentUsername(), "upload", idempotencyKey, fingerprint,
+                () -> upload(file));
+    }
 
-            return ResponseEntity.ok(fileName);
+    private CompletableFuture<ResponseEntity<String>> upload(MultipartFile file) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        // Normalize file name
+        String fileName = UUID.randomUUID().toString() + "_" + sanitizeFileName(file.getOriginalFilename());
+        Path staged = null;
+        try {
+            staged = blobStore.createStagingFile(fileName);
+            try (InputStream in = file.getInputStream(); OutputStream out = Files.newOutputStream(staged)) {
+                fileEncryptionService.encrypt(in, out);
+            }
         } catch (IOException ex) {
-            return ResponseEntity.badRequest()
-                    .body("Could not upload file " + file.getOriginalFilename() + ". Please try again!");
+            deleteQuietly(staged);
+            recordUpload(sample, file, "failure");
+            return CompletableFuture.completedFuture(uploadFailed(file));
         }
+
+        return blobStore.put(fileName, staged)
+                .thenApply(v -> {
+                    previewService.schedule(fileName);
+                    recordUpload(sample, file, "success");
+                    return ResponseEntity.ok(fileName);
+                })
+                .exceptionally(ex -> {
+                    recordUpload(sample, file, "failure");
+                    return uploadFailed(file);
+                });
+    }
+
+    private void recordUpload(Timer.Sample sample, MultipartFile file, String outcome) {
+        sample.stop(Timer.builder("bookurmedical.upload")
+                .description("Upload latency, staging encryption through blob store write")
+                .tag("outcome", outcome)
+                .register(meterRegistry));
+        DistributionSummary.builder("bookurmedical.upload.bytes")
+                .description("Uploaded file sizes")
+                .baseUnit("bytes")
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .record(file.getSize());
+    }
+
+    /**
+     * Streams a file referenced by the caller's own case sheet. Supports Range
+     * requests and conditional GETs (ETag / Last-Modified).
+     */
+    @RequestMapping(value = "/files/{fileName}", method = { RequestMethod.GET, RequestMethod.HEAD })
+    public void downloadFile(@PathVariable String fileName, HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        User user = currentUser();
+        boolean referenced = medicalCaseSheetRepository.findFirstByUserIdOrderByIdDesc(user.getId())
+                .map(sheet -> sheet.fileReferences().contains(fileName))
+                .orElse(false);
+
+        if (!referenced || !fileDownloadService.serve(fileName, originalFileName(fileName), request, response)) {
+            response.sendError(HttpStatus.NOT_FOUND.value(), "File not found.");
+            return;
+        }
+        auditLog.record("file.download", "files", fileName, request.getMethod());
+    }
+
+    /**
+     * Downscaled JPEG preview of an imaging file / first page of a PDF report
+     * referenced by the caller's case sheet. 404 until the background
+     * pipeline has produced it (or if the file type has no preview).
+     */
+    @GetMapping("/files/{fileName}/preview")
+    public void downloadPreview(@PathVariable String fileName, HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        User user = currentUser();
+        boolean referenced = medicalCaseSheetRepository.findFirstByUserIdOrderByIdDesc(user.getId())
+                .map(sheet -> sheet.fileReferences().contains(fileName))
+                .orElse(false);
+
+        String previewName = originalFileName(fileName) + ".preview.jpg";
+        if (!referenced || !fileDownloadService.serve(PreviewService.previewKey(fileName), previewName,
+                request, response)) {
+            response.sendError(HttpStatus.NOT_FOUND.value(), "Preview not available.");
+            return;
+        }
+        auditLog.record("file.preview", "files", fileName, null);
+    }
+
+    // ── Helpers ───────────────────────────────────────────────────────────────
+
+    private static String currentUsername() {
+        return SecurityContextHolder.getContext().getAuthentication().getName();
+    }
+
+    private User currentUser() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        String username = ((UserDetails) authentication.getPrincipal()).getUsername();
+
+        return userRepository.findByUsername(username)
+                .orElseThrow(() -> new RuntimeException("Error: User not found."));
+    }
+
+    /**
+     * Preview status of each file field. Fields without a file, or whose file
+     * type has no preview, are left out.
+     */
+    private Map<String, Map<String, String>> previews(Map<String, Object> sheet) {
+        Map<String, Map<String, String>> previews = new LinkedHashMap<>();
+        for (String field : MedicalCaseSheet.FILE_FIELDS) {
+            if (!(sheet.get(field) instanceof String fileName) || fileName.isBlank())
+                continue;
+            try {
+                previewService.status(fileName).ifPresent(status -> previews.put(field,
+                        status == PreviewService.Status.READY
+                                ? Map.of("status", "ready", "url", "/api/medical-history/files/"
+                                        + UriUtils.encodePathSegment(fileName, StandardCharsets.UTF_8) + "/preview")
+                                : Map.of("status", status.name().toLowerCase(Locale.ROOT))));
+            } catch (IOException e) {
+                log.warn("[Preview] Could not check preview of '{}': {}", fileName, e.getMessage());
+            }
+        }
+        return previews;
+    }
+
+    private static String caseSheetEtag(SheetVersion version, Set<String> selection) {
+        return "\"" + version.id() + "-" + version.revision() + "-"
+                + Integer.toHexString(String.join(",", selection).hashCode()) + "\"";
+    }
+
+    private static ResponseEntity<String> uploadFailed(MultipartFile file) {
+        return ResponseEntity.badRequest()
+                .body("Could not upload file " + file.getOriginalFilename() + ". Please try again!");
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            if (path != null)
+                Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+            // staging directory is best-effort
+        }
+    }
+
+    /** Storage keys are flat: drop any client-supplied directory components. */
+    private static String sanitizeFileName(String originalName) {
+        if (originalName == null || originalName.isBlank())
+            return "file";
+        String name = originalName.substring(Math.max(originalName.lastIndexOf('/'), originalName.lastIndexOf('\\')) + 1);
+        return name.isBlank() || name.equals("..") ? "file" : name;
+    }
+
+    /** Strips the "<uuid>_" prefix added by uploadFile. */
+    private static String originalFileName(String storedName) {
+        int sep = storedName.indexOf('_');
+        return sep > 0 ? storedName.substring(sep + 1) : storedName;
     }
 }
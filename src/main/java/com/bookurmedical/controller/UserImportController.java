@@ -0,0 +1,58 @@
+package com.bookurmedical.controller;
+
+import com.bookurmedical.audit.AuditLog;
+import com.bookurmedical.dto.SignupRequest;
+import com.bookurmedical.service.UserImportService;
+import com.bookurmedical.service.UserImportService.ImportReport;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+@CrossOrigin(origins = "*", maxAge = 3600)
+@RestController
+@RequestMapping("/api/admin/users")
+public class UserImportController {
+
+    private static final String CSV = "text/csv";
+    private static final String NDJSON = "application/x-ndjson";
+
+    @Autowired
+    UserImportService userImportService;
+
+    @Autowired
+    AuditLog auditLog;
+
+    /**
+     * Registers a partner facility's patients in one request: a CSV file
+     * (header row of signup field names) or NDJSON (one signup object per
+     * line). Returns a report with one result per row; verification emails
+     * are queued.
+     */
+    @PostMapping(value = "/import", consumes = { CSV, NDJSON })
+    public ResponseEntity<?> importUsers(@RequestHeader("Content-Type") MediaType contentType, InputStream body)
+            throws IOException {
+        List<SignupRequest> rows;
+        try (Reader reader = new InputStreamReader(body, contentType.getCharset() != null
+                ? contentType.getCharset()
+                : StandardCharsets.UTF_8)) {
+            rows = contentType.isCompatibleWith(MediaType.parseMediaType(CSV))
+                    ? userImportService.parseCsv(reader)
+                    : userImportService.parseNdjson(reader);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Error: " + e.getMessage());
+        }
+
+        ImportReport report = userImportService.importUsers(rows);
+        auditLog.record("user.import", "users", null,
+                "created=" + report.created() + " rejected=" + report.rejected() + " failed=" + report.failed());
+        return ResponseEntity.ok(report);
+    }
+}
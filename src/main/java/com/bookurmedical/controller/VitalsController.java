@@ -0,0 +1,115 @@
+package com.bookurmedical.controller;
+
+import com.bookurmedical.audit.AuditLog;
+import com.bookurmedical.dto.VitalReadingRequest;
+import com.bookurmedical.dto.VitalTrendPoint;
+import com.bookurmedical.entity.User;
+import com.bookurmedical.entity.VitalReading;
+import com.bookurmedical.repository.UserRepository;
+import com.bookurmedical.service.VitalsService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+@CrossOrigin(origins = "*", maxAge = 3600)
+@RestController
+@RequestMapping("/api/vitals")
+public class VitalsController {
+
+    @Autowired
+    VitalsService vitalsService;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    AuditLog auditLog;
+
+    @PostMapping
+    public ResponseEntity<?> recordVitals(@RequestBody List<VitalReadingRequest> requests) {
+        User user = currentUser();
+        List<VitalReading> readings = new ArrayList<>();
+        for (VitalReadingRequest request : requests) {
+            if (!VitalsService.TYPES.contains(request.getType()))
+                return ResponseEntity.badRequest().body("Error: Unknown vital type '" + request.getType() + "'.");
+            String value = vitalsService.normalize(request.getType(), request.getValue());
+            if (value == null)
+                return ResponseEntity.badRequest()
+                        .body("Error: Invalid value for " + request.getType() + ": '" + request.getValue() + "'.");
+            readings.add(vitalsService.reading(user.getId(), request.getType(), value,
+                    request.getTimestamp() != null ? request.getTimestamp() : Instant.now()));
+        }
+
+        vitalsService.record(readings);
+        auditLog.record("vitals.record", "vital_readings", user.getId(), "readings=" + readings.size());
+        return ResponseEntity.ok("Vitals recorded successfully!");
+    }
+
+    /**
+     * Raw readings of one vital in [from, to) — defaults to the last 30 days.
+     * A range with more readings than fit one page comes back with
+     * {@code nextFrom}; pass it as {@code from} for the rest.
+     */
+    @GetMapping
+    public ResponseEntity<?> getVitals(@RequestParam("type") String type,
+            @RequestParam(value = "from", required = false) Instant from,
+            @RequestParam(value = "to", required = false) Instant to) {
+        if (!VitalsService.TYPES.contains(type))
+            return ResponseEntity.badRequest().body("Error: Unknown vital type '" + type + "'.");
+        Instant end = to != null ? to : Instant.now();
+        Instant start = from != null ? from : end.minus(30, ChronoUnit.DAYS);
+
+        try {
+            String userId = currentUser().getId();
+            VitalsService.ReadingPage page = vitalsService.range(userId, type, start, end);
+            auditLog.record("vitals.read", "vital_readings", userId, "type=" + type);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Error: " + e.getMessage());
+        }
+    }
+
+    /** Min / max / avg per hour or day in [from, to) — defaults to the last 30 days. */
+    @GetMapping("/trend")
+    public ResponseEntity<?> getTrend(@RequestParam("type") String type,
+            @RequestParam(value = "interval", defaultValue = "day") String interval,
+            @RequestParam(value = "from", required = false) Instant from,
+            @RequestParam(value = "to", required = false) Instant to) {
+        if (!VitalsService.TYPES.contains(type))
+            return ResponseEntity.badRequest().body("Error: Unknown vital type '" + type + "'.");
+        ChronoUnit unit = switch (interval) {
+            case "hour" -> ChronoUnit.HOURS;
+            case "day" -> ChronoUnit.DAYS;
+            default -> null;
+        };
+        if (unit == null)
+            return ResponseEntity.badRequest().body("Error: interval must be 'hour' or 'day'.");
+        Instant end = to != null ? to : Instant.now();
+        Instant start = from != null ? from : end.minus(30, ChronoUnit.DAYS);
+
+        try {
+            String userId = currentUser().getId();
+            List<VitalTrendPoint> trend = vitalsService.trend(userId, type, start, end, unit);
+            auditLog.record("vitals.trend", "vital_readings", userId, "type=" + type);
+            return ResponseEntity.ok(trend);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Error: " + e.getMessage());
+        }
+    }
+
+    private User currentUser() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        String username = ((UserDetails) authentication.getPrincipal()).getUsername();
+
+        return userRepository.findByUsername(username)
+                .orElseThrow(() -> new RuntimeException("Error: User not found."));
+    }
+}
@@ -0,0 +1,17 @@
+package com.bookurmedical.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.Instant;
+
+@Data
+@AllArgsConstructor
+public class CaseSheetSummary {
+    private String id;
+    private String userId;
+    private String name;
+    private String chiefComplaint;
+    private String primaryDiagnosis;
+    private Instant updatedAt;
+}
@@ -0,0 +1,13 @@
+
+package com.bookurmedical.dto;
+
+import lombok.Data;
+
+import java.time.Instant;
+
+@Data
+public class VitalReadingRequest {
+    private String type;
+    private String value;
+    private Instant timestamp; // optional — defaults to now
+}
@@ -0,0 +1,18 @@
+
+package com.bookurmedical.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.Instant;
+
+@Data
+@AllArgsConstructor
+public class VitalTrendPoint {
+    private Instant bucketStart;
+    private String series; // the vital type, or "systolic" / "diastolic" for blood pressure
+    private double min;
+    private double max;
+    private double avg;
+    private long count;
+}
@@ -0,0 +1,45 @@
+package com.bookurmedical.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * Outcome of a request made with an Idempotency-Key, so a retry of the same
+ * request gets the stored response instead of running again.
+ *
+ * - completed = false : the request is running; {@code lockedUntil} is its
+ * lease, after which a retry may take over (the first attempt crashed).
+ * - completed = true : {@code responseStatus} / {@code responseBody} are
+ * replayed for retries.
+ *
+ * Removed by the TTL index once {@code expiresAt} has passed.
+ */
+@Document(collection = "idempotency_keys")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class IdempotencyRecord {
+    /** username:endpoint:key */
+    @Id
+    private String id;
+
+    /** Hash of the request, to reject a key reused for a different request. */
+    private String fingerprint;
+
+    private boolean completed;
+
+    private Integer responseStatus;
+
+    private String responseBody;
+
+    private Instant lockedUntil;
+
+    @Indexed(expireAfter = "0s")
+    private Instant expiresAt;
+}
@@ -2,14 +2,22 @@
 package com.bookurmedical.entity;
 
 import com.bookurmedical.annotation.Encrypted;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
+import java.time.Instant;
 import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
 
 @Document(collection = "medical_case_sheets")
+// Covers the per-user "latest sheet + revision" lookup used for ETags
+@CompoundIndex(name = "user_latest_revision", def = "{'userId': 1, '_id': -1, 'revision': 1}")
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -17,8 +25,24 @@ public class MedicalCaseSheet {
     @Id
     private String id;
 
+    // One sheet per user. Partial: sheets saved before submit() upserted (no revision) may be duplicated
+    @Indexed(name = "user_unique_sheet", unique = true, partialFilter = "{ 'revision': { $exists: true } }")
     private String userId; // Link to User — kept plain for querying
 
+    private Long revision; // incremented on every change — plain, server-managed
+
+    private Instant updatedAt; // server-managed
+
+    // ── Blind indexes (HMAC tokens, server-managed) ───────────────────────────
+    // Searchable stand-ins for the encrypted diagnosis / allergy text
+    @JsonIgnore
+    @Indexed
+    private List<String> diagnosisIndex; // primaryDiagnosis, secondaryDiagnosis, conditions
+
+    @JsonIgnore
+    @Indexed
+    private List<String> allergyIndex; // allergies
+
     // ── Patient Information (PHI) ─────────────────────────────────────────────
     @Encrypted
     private String name;
@@ -134,4 +158,25 @@ public class MedicalCaseSheet {
     // ── Progress Notes (PHI) ─────────────────────────────────────────────────
     @Encrypted
     private String progressNotes;
+
+    // ── Helpers ───────────────────────────────────────────────────────────────
+
+    /** Mongo field names of the diagnostic file fields (for projections). */
+    public static final List<String> FILE_FIELDS = List.of("xrayFile", "ctScanFile", "usgFile", "mriFile",
+            "bloodReportFile", "urineReportFile", "tissueBiopsyFile",
+            "liverFunctionTestFile", "kidneyFunctionTestFile", "lipidProfileFile",
+            "bloodCultureFile", "urineCultureFile", "sputumCultureFile",
+            "dischargeSummaryFile");
+
+    /** Stored file names referenced by the diagnostic file fields above. */
+    public List<String> fileReferences() {
+        return Stream.of(xrayFile, ctScanFile, usgFile, mriFile,
+                bloodReportFile, urineReportFile, tissueBiopsyFile,
+                liverFunctionTestFile, kidneyFunctionTestFile, lipidProfileFile,
+                bloodCultureFile, urineCultureFile, sputumCultureFile,
+                dischargeSummaryFile)
+                .filter(Objects::nonNull)
+                .filter(f -> !f.isBlank())
+                .toList();
+    }
 }
@@ -0,0 +1,52 @@
+package com.bookurmedical.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One entry in the append-only history of a {@link MedicalCaseSheet}.
+ *
+ * - snapshot = true : {@code fields} holds every stored field of the sheet
+ * at this revision (written every N revisions).
+ * - snapshot = false : {@code fields} holds only the fields set by this
+ * revision and {@code removedFields} the ones unset.
+ *
+ * Field values are copied verbatim from the case sheet, i.e. they are
+ * already AES-GCM encrypted (ENC::...) and are never decrypted on write.
+ */
+@Document(collection = "medical_case_sheet_revisions")
+@CompoundIndexes({
+        @CompoundIndex(name = "sheet_revision", def = "{'caseSheetId': 1, 'revision': 1}", unique = true),
+        @CompoundIndex(name = "sheet_snapshot", def = "{'caseSheetId': 1, 'snapshot': 1, 'revision': -1}"),
+        @CompoundIndex(name = "sheet_created", def = "{'caseSheetId': 1, 'createdAt': -1}")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MedicalCaseSheetRevision {
+    @Id
+    private String id;
+
+    private String caseSheetId;
+
+    private String userId;
+
+    private long revision;
+
+    private Instant createdAt;
+
+    private boolean snapshot;
+
+    private Map<String, String> fields; // encrypted values as stored on the sheet
+
+    private List<String> removedFields;
+}
@@ -17,6 +17,7 @@ public class User {
     @Id
     private String id;
 
+    @Indexed
     private String username; // login key — plain text, queryable
 
     @Encrypted
@@ -43,6 +44,7 @@ public class User {
     @Encrypted
     private String resetToken; // sensitive token — stored encrypted
 
+    @Indexed(sparse = true)
     private String resetTokenHash; // HMAC of resetToken — used for lookup
 
     private java.time.LocalDateTime resetTokenExpiry;
@@ -50,6 +52,7 @@ public class User {
     @Encrypted
     private String emailVerificationToken; // sensitive token — stored encrypted
 
+    @Indexed(sparse = true)
     private String emailVerificationTokenHash; // HMAC — used for lookup
 
     private boolean emailVerified = false;
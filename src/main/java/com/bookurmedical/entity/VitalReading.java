@@ -0,0 +1,50 @@
+package com.bookurmedical.entity;
+
+import com.bookurmedical.annotation.Encrypted;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.TimeSeries;
+import org.springframework.data.mongodb.core.timeseries.Granularity;
+
+import java.time.Instant;
+
+/**
+ * A single vital-sign measurement, stored in a MongoDB time-series
+ * collection bucketed by (userId, type).
+ *
+ * The bucket key ({@code meta}) is plain so that range queries stay on the
+ * bucket index; the measured value itself is PHI and is encrypted.
+ */
+@Document(collection = "vital_readings")
+@TimeSeries(timeField = "timestamp", metaField = "meta", granularity = Granularity.MINUTES)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VitalReading {
+
+    public static final String HEART_RATE = "heartRate";
+    public static final String SPO2 = "spo2";
+    public static final String BLOOD_PRESSURE = "bloodPressure";
+    public static final String RESPIRATORY_RATE = "respiratoryRate";
+
+    @Id
+    private String id;
+
+    private Meta meta; // bucket key — kept plain for querying
+
+    private Instant timestamp;
+
+    @Encrypted
+    private String value; // e.g. "72", "98", "120/80"
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Meta {
+        private String userId;
+        private String type;
+    }
+}
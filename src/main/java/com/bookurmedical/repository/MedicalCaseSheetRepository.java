@@ -7,4 +7,7 @@ import java.util.Optional;
 
 public interface MedicalCaseSheetRepository extends MongoRepository<MedicalCaseSheet, String> {
     Optional<MedicalCaseSheet> findByUserId(String userId);
+
+    /** Latest case sheet for a user — tolerates legacy duplicate submissions. */
+    Optional<MedicalCaseSheet> findFirstByUserIdOrderByIdDesc(String userId);
 }
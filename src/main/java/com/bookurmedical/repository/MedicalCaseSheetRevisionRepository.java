@@ -0,0 +1,30 @@
+package com.bookurmedical.repository;
+
+import com.bookurmedical.annotation.SecondaryReads;
+import com.bookurmedical.entity.MedicalCaseSheetRevision;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+public interface MedicalCaseSheetRevisionRepository extends MongoRepository<MedicalCaseSheetRevision, String> {
+
+    /** Nearest full snapshot at or before {@code revision}. */
+    @SecondaryReads
+    Optional<MedicalCaseSheetRevision> findFirstByCaseSheetIdAndSnapshotTrueAndRevisionLessThanEqualOrderByRevisionDesc(
+            String caseSheetId, long revision);
+
+    /** Deltas in (fromRevision, toRevision], oldest first. */
+    @SecondaryReads
+    List<MedicalCaseSheetRevision> findByCaseSheetIdAndRevisionGreaterThanAndRevisionLessThanEqualOrderByRevisionAsc(
+            String caseSheetId, long fromRevision, long toRevision);
+
+    /** Whether {@code revision} was recorded (read from the primary: it may have just been written). */
+    boolean existsByCaseSheetIdAndRevision(String caseSheetId, long revision);
+
+    /** Latest revision written at or before {@code at}. */
+    @SecondaryReads
+    Optional<MedicalCaseSheetRevision> findFirstByCaseSheetIdAndCreatedAtLessThanEqualOrderByCreatedAtDesc(
+            String caseSheetId, Instant at);
+}
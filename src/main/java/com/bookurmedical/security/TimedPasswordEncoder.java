@@ -0,0 +1,64 @@
+package com.bookurmedical.security;
+
+import com.bookurmedical.config.ServerTiming;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times a delegate encoder as bookurmedical.password{op=encode|matches}, so
+ * the BCrypt share of a slow signup / signin is visible on its own (also in
+ * the request's Server-Timing, as "password").
+ */
+public class TimedPasswordEncoder implements PasswordEncoder {
+
+    private final PasswordEncoder delegate;
+    private final Timer encodeTimer;
+    private final Timer matchesTimer;
+
+    public TimedPasswordEncoder(PasswordEncoder delegate, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.encodeTimer = timer(meterRegistry, "encode");
+        this.matchesTimer = timer(meterRegistry, "matches");
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        long start = System.nanoTime();
+        try {
+            return delegate.encode(rawPassword);
+        } finally {
+            record(encodeTimer, start);
+        }
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        long start = System.nanoTime();
+        try {
+            return delegate.matches(rawPassword, encodedPassword);
+        } finally {
+            record(matchesTimer, start);
+        }
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    private static void record(Timer timer, long start) {
+        long nanos = System.nanoTime() - start;
+        timer.record(nanos, TimeUnit.NANOSECONDS);
+        ServerTiming.record("password", nanos);
+    }
+
+    private static Timer timer(MeterRegistry registry, String op) {
+        return Timer.builder("bookurmedical.password")
+                .description("Password hashing and verification")
+                .tag("op", op)
+                .register(registry);
+    }
+}
@@ -1,12 +1,16 @@
 
 package com.bookurmedical.security.jwt;
 
+import com.bookurmedical.config.ServerTiming;
 import com.bookurmedical.security.services.UserDetailsImpl;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Component;
@@ -24,16 +28,29 @@ public class JwtUtils {
     @Value("${security.jwt.accesstoken-expiration-time}")
     private int jwtExpirationMs;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     public String generateJwtToken(Authentication authentication) {
 
         UserDetailsImpl userPrincipal = (UserDetailsImpl) authentication.getPrincipal();
 
-        return Jwts.builder()
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String token = Jwts.builder()
                 .subject((userPrincipal.getUsername()))
                 .issuedAt(new Date())
                 .expiration(new Date((new Date()).getTime() + jwtExpirationMs))
                 .signWith(key(), Jwts.SIG.HS256)
                 .compact();
+        ServerTiming.record("jwt-sign", sample.stop(timer("sign", "success")));
+        return token;
+    }
+
+    private Timer timer(String op, String outcome) {
+        return Timer.builder("bookurmedical.jwt")
+                .description("JWT signing and verification")
+                .tags("op", op, "outcome", outcome)
+                .register(meterRegistry);
     }
 
     private SecretKey key() {
@@ -45,8 +62,11 @@ public class JwtUtils {
     }
 
     public boolean validateJwtToken(String authToken) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "invalid";
         try {
             Jwts.parser().verifyWith(key()).build().parseSignedClaims(authToken);
+            outcome = "success";
             return true;
         } catch (MalformedJwtException e) {
             logger.error("Invalid JWT token: {}", e.getMessage());
@@ -56,6 +76,8 @@ public class JwtUtils {
             logger.error("JWT token is unsupported: {}", e.getMessage());
         } catch (IllegalArgumentException e) {
             logger.error("JWT claims string is empty: {}", e.getMessage());
+        } finally {
+            ServerTiming.record("jwt-verify", sample.stop(timer("verify", outcome)));
         }
 
         return false;
@@ -1,26 +1,65 @@
 
 package com.bookurmedical.security.services;
 
+import com.bookurmedical.cache.CacheInvalidationBus;
+import com.bookurmedical.cache.InvalidatingCache;
+import com.bookurmedical.config.ServerTiming;
 import com.bookurmedical.entity.User;
 import com.bookurmedical.repository.UserRepository;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
+
 @Service
 public class UserDetailsServiceImpl implements UserDetailsService {
 
     @Autowired
     UserRepository userRepository;
 
+    @Autowired
+    CacheInvalidationBus cacheInvalidationBus;
+
+    @Value("${app.cache.user-details.ttl:PT5M}")
+    private Duration cacheTtl;
+
+    @Value("${app.cache.user-details.max-size:10000}")
+    private int cacheMaxSize;
+
+    /** Username → details, evicted on any change to the user document (on any instance). */
+    private InvalidatingCache<String, UserDetailsImpl> cache;
+
+    @PostConstruct
+    public void createCache() {
+        cache = cacheInvalidationBus.newCache("user-details", "users", cacheTtl, cacheMaxSize, UserDetailsImpl::getId);
+    }
+
+    /**
+     * Same as {@link #loadUserByUsername}, served from the local cache. Used by
+     * the JWT filter on every request; sign-in keeps loading fresh.
+     */
+    public UserDetails loadCachedUserByUsername(String username) throws UsernameNotFoundException {
+        return cache.get(username, () -> (UserDetailsImpl) loadUserByUsername(username));
+    }
+
+    /** Reported to Server-Timing as user-lookup (the Mongo read plus PII decryption). */
     @Override
     @Transactional
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new UsernameNotFoundException("User Not Found with username: " + username));
+        long start = System.nanoTime();
+        User user;
+        try {
+            user = userRepository.findByUsername(username)
+                    .orElseThrow(() -> new UsernameNotFoundException("User Not Found with username: " + username));
+        } finally {
+            ServerTiming.record("user-lookup", System.nanoTime() - start);
+        }
 
         // ── Backward-compatibility migration ──────────────────────────────────
         // Users created BEFORE the email-verification system was added will have
@@ -0,0 +1,206 @@
+package com.bookurmedical.service;
+
+import com.bookurmedical.annotation.Encrypted;
+import com.bookurmedical.annotation.SecondaryReads;
+import com.bookurmedical.entity.MedicalCaseSheet;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Bulk NDJSON export of all case sheets for partner hospitals.
+ *
+ * - Reads raw documents through one Mongo cursor (no entity mapping, so the
+ * encryption listener does not decrypt on the cursor thread).
+ * - Decrypts and serialises each sheet on a shared worker pool; at most
+ * {@code window} sheets are in flight per export and lines are written in
+ * cursor order as the head of the window completes.
+ * - Writing blocks on the response stream, which in turn stops the cursor from
+ * advancing — a slow client holds back the read side instead of filling the
+ * heap. Memory per export is bounded by the window, not the collection size.
+ */
+@Service
+public class CaseSheetExportService {
+
+    private static final Logger log = LoggerFactory.getLogger(CaseSheetExportService.class);
+
+    /** Internal fields that never leave the server. */
+    private static final List<String> EXCLUDED_FIELDS = List.of("_class", "diagnosisIndex", "allergyIndex");
+
+    /**
+     * Added to a sheet whose encrypted fields could not all be decrypted:
+     * field name → error. Those fields are exported as null, never dropped.
+     */
+    public static final String EXPORT_ERRORS_FIELD = "_exportErrors";
+
+    /** Sheets written, and how many of them carry {@link #EXPORT_ERRORS_FIELD}. */
+    public record ExportResult(long sheets, long incompleteSheets) {
+    }
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private FieldEncryptionService encryptionService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.export.window:256}")
+    private int window;
+
+    @Value("${app.export.batch-size:500}")
+    private int batchSize;
+
+    private final ThreadPoolExecutor executor;
+
+    public CaseSheetExportService(@Value("${app.export.workers:0}") int workers) {
+        int threads = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread t = new Thread(r, "export-" + threadNumber.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Writes every case sheet as one JSON line, oldest first.
+     *
+     * @param written advanced as each line is written, so the caller still
+     *                knows how far an export got when it throws
+     * @return number of sheets written, and how many had undecryptable fields
+     */
+    @SecondaryReads
+    public ExportResult export(OutputStream out, AtomicLong written) throws IOException {
+        List<String> encryptedFields = encryptedFields();
+        AtomicLong incomplete = new AtomicLong();
+        Query query = new Query().with(Sort.by(Sort.Direction.ASC, "_id")).cursorBatchSize(batchSize);
+        EXCLUDED_FIELDS.forEach(field -> query.fields().exclude(field));
+
+        Deque<Future<byte[]>> inFlight = new ArrayDeque<>(window);
+        String collection = mongoTemplate.getCollectionName(MedicalCaseSheet.class);
+        try (Stream<Document> documents = mongoTemplate.stream(query, Document.class, collection)) {
+            Iterator<Document> it = documents.iterator();
+            while (it.hasNext()) {
+                Document document = it.next();
+                if (inFlight.size() == window) {
+                    out.write(await(inFlight.removeFirst()));
+                    written.incrementAndGet();
+                }
+                inFlight.addLast(executor.submit(() -> toLine(document, encryptedFields, incomplete)));
+            }
+            while (!inFlight.isEmpty()) {
+                out.write(await(inFlight.removeFirst()));
+                written.incrementAndGet();
+            }
+        } finally {
+            // Client went away or a sheet failed: drop whatever is still queued
+            inFlight.forEach(future -> future.cancel(true));
+        }
+        out.flush();
+        if (incomplete.get() > 0)
+            log.warn("[Export] {} of {} sheets exported with undecryptable fields (marked in {})",
+                    incomplete.get(), written.get(), EXPORT_ERRORS_FIELD);
+        return new ExportResult(written.get(), incomplete.get());
+    }
+
+    // ── Helpers ───────────────────────────────────────────────────────────────
+
+    private byte[] toLine(Document document, List<String> encryptedFields, AtomicLong incomplete)
+            throws IOException {
+        Map<String, String> errors = new LinkedHashMap<>();
+        for (String field : encryptedFields) {
+            if (!(document.get(field) instanceof String value) || value.isBlank())
+                continue;
+            try {
+                document.put(field, encryptionService.decrypt(value));
+            } catch (Exception e) {
+                log.warn("[Export] Could not decrypt '{}' on sheet {}: {}", field, document.get("_id"),
+                        e.getMessage());
+                document.put(field, null);
+                errors.put(field, "decryption failed");
+            }
+        }
+        if (!errors.isEmpty()) {
+            document.put(EXPORT_ERRORS_FIELD, errors);
+            incomplete.incrementAndGet();
+            Counter.builder("bookurmedical.export.decrypt-failures")
+                    .description("Case-sheet fields exported as null because they could not be decrypted")
+                    .register(meterRegistry)
+                    .increment(errors.size());
+        }
+        document.replaceAll((key, value) -> value instanceof ObjectId id ? id.toHexString()
+                : value instanceof Date date ? date.toInstant()
+                : value);
+
+        byte[] json = objectMapper.writeValueAsBytes(document);
+        byte[] line = new byte[json.length + 1];
+        System.arraycopy(json, 0, line, 0, json.length);
+        line[json.length] = '\n';
+        return line;
+    }
+
+    private List<String> encryptedFields() {
+        MongoPersistentEntity<?> entity = mongoTemplate.getConverter().getMappingContext()
+                .getRequiredPersistentEntity(MedicalCaseSheet.class);
+        List<String> fields = new ArrayList<>();
+        for (MongoPersistentProperty property : entity) {
+            if (property.isAnnotationPresent(Encrypted.class))
+                fields.add(property.getFieldName());
+        }
+        return fields;
+    }
+
+    private static byte[] await(Future<byte[]> line) throws IOException {
+        try {
+            return line.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Export interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Export failed: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+}
@@ -1,26 +1,42 @@
 
 package com.bookurmedical.service;
 
+import com.bookurmedical.config.AsyncConfig;
+import com.bookurmedical.config.ServerTiming;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
 import org.springframework.mail.SimpleMailMessage;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+
 @Service
 public class EmailService {
 
+    private static final Logger log = LoggerFactory.getLogger(EmailService.class);
+    private static final int BULK_CHUNK = 100;
+
     @Autowired
     private JavaMailSender mailSender;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     @Value("${spring.mail.username}")
     private String fromEmail;
 
     @Value("${app.frontend-url}")
     private String frontendBaseUrl;
 
-    @Async
+    @Async(AsyncConfig.EMAIL_EXECUTOR)
     public void sendWelcomeEmail(String toEmail, String firstName) {
         SimpleMailMessage message = new SimpleMailMessage();
         message.setFrom(fromEmail);
@@ -34,12 +50,64 @@ public class EmailService {
                         "Best regards,\n" +
                         "The BookUrMedical Team");
 
-        mailSender.send(message);
+        send("welcome", message, null, null);
     }
 
-    @Async
+    @Async(AsyncConfig.EMAIL_EXECUTOR)
     public void sendVerificationEmail(String toEmail, String firstName, String token) {
-        String verifyLink = frontendBaseUrl + "/verify-email?token=" + token;
+        send("verification", verificationMessage(toEmail, firstName, token), "EMAIL VERIFICATION LINK",
+                verifyLink(token));
+    }
+
+    /** A verification mail for an account created by a bulk import. */
+    public record VerificationEmail(String toEmail, String firstName, String token) {
+    }
+
+    /**
+     * Sends an import's verification mails as a single queued task, so
+     * thousands of recipients take one mail worker and one queue slot instead
+     * of overflowing the queue. Each chunk of {@code BULK_CHUNK} messages
+     * goes over one SMTP connection.
+     */
+    @Async(AsyncConfig.EMAIL_EXECUTOR)
+    public void sendVerificationEmails(List<VerificationEmail> emails) {
+        int failed = 0;
+        for (int from = 0; from < emails.size(); from += BULK_CHUNK) {
+            List<VerificationEmail> chunk = emails.subList(from, Math.min(from + BULK_CHUNK, emails.size()));
+            SimpleMailMessage[] messages = chunk.stream()
+                    .map(email -> verificationMessage(email.toEmail(), email.firstName(), email.token()))
+                    .toArray(SimpleMailMessage[]::new);
+            Timer.Sample sample = Timer.start(meterRegistry);
+            String outcome = "failure";
+            try {
+                mailSender.send(messages);
+                outcome = "success";
+            } catch (MailSendException e) {
+                failed += e.getFailedMessages().isEmpty() ? messages.length : e.getFailedMessages().size();
+                for (int i = 0; i < messages.length; i++) {
+                    if (e.getFailedMessages().isEmpty() || e.getFailedMessages().containsKey(messages[i]))
+                        printDevLink("EMAIL VERIFICATION LINK", verifyLink(chunk.get(i).token()));
+                }
+            } catch (MailException e) {
+                failed += messages.length;
+                chunk.forEach(email -> printDevLink("EMAIL VERIFICATION LINK", verifyLink(email.token())));
+            } finally {
+                sample.stop(Timer.builder("bookurmedical.mail")
+                        .description("Outgoing mail sends")
+                        .tags("type", "verification_bulk", "outcome", outcome)
+                        .register(meterRegistry));
+            }
+        }
+        if (failed > 0)
+            log.warn("[Mail] {} of {} bulk verification emails failed", failed, emails.size());
+    }
+
+    private String verifyLink(String token) {
+        return frontendBaseUrl + "/verify-email?token=" + token;
+    }
+
+    private SimpleMailMessage verificationMessage(String toEmail, String firstName, String token) {
+        String verifyLink = verifyLink(token);
 
         SimpleMailMessage message = new SimpleMailMessage();
         message.setFrom(fromEmail);
@@ -54,11 +122,10 @@ public class EmailService {
                         "If you did not create an account, please ignore this email.\n\n" +
                         "Best regards,\n" +
                         "The BookUrMedical Team");
-
-        mailSender.send(message);
+        return message;
     }
 
-    @Async
+    @Async(AsyncConfig.EMAIL_EXECUTOR)
     public void sendPasswordResetEmail(String toEmail, String token) {
         String resetLink = frontendBaseUrl + "/reset-password?token=" + token;
 
@@ -76,6 +143,39 @@ public class EmailService {
                         "Best regards,\n" +
                         "The BookUrMedical Team");
 
-        mailSender.send(message);
+        send("password_reset", message, "PASSWORD RESET LINK", resetLink);
+    }
+
+    /**
+     * Sends and times one mail as bookurmedical.mail{type, outcome}.
+     *
+     * Runs on the mail pool, after the request has returned, so a failure is
+     * handled here: it is logged and, for mails carrying a link, the link is
+     * printed to the console (dev mode, where no SMTP server is configured).
+     */
+    private void send(String type, SimpleMailMessage message, String linkLabel, String link) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "failure";
+        try {
+            mailSender.send(message);
+            outcome = "success";
+        } catch (MailException e) {
+            if (link != null)
+                printDevLink(linkLabel, link);
+            log.warn("[Mail] Failed to send {} email (suppressed for dev): {}", type, e.getMessage());
+        } finally {
+            // Only shows in Server-Timing if the send ran on the request thread
+            ServerTiming.record("mail", sample.stop(Timer.builder("bookurmedical.mail")
+                    .description("Outgoing mail sends")
+                    .tags("type", type, "outcome", outcome)
+                    .register(meterRegistry)));
+        }
+    }
+
+    private static void printDevLink(String label, String link) {
+        System.out.println("------------------------------------------------");
+        System.out.println(label + " (Dev Mode):");
+        System.out.println(link);
+        System.out.println("------------------------------------------------");
     }
 }
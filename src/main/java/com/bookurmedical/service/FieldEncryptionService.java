@@ -1,5 +1,8 @@
 package com.bookurmedical.service;
 
+import com.bookurmedical.config.ServerTiming;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
@@ -12,8 +15,15 @@ import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.SecureRandom;
+import java.text.Normalizer;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Dual-mode field-level encryption service.
@@ -38,6 +48,9 @@ import java.util.Base64;
  * encryption
  * will NOT be decryptable automatically. You should run a one-time migration
  * script (or clear the collection in dev) after enabling this feature.
+ *
+ * Every operation is timed as bookurmedical.crypto{op=encrypt|decrypt|hmac|
+ * blind_index}, and reported to the request's {@link ServerTiming}.
  */
 @Service
 public class FieldEncryptionService {
@@ -48,14 +61,40 @@ public class FieldEncryptionService {
     private static final int IV_LEN = 12;
     private static final int TAG_BITS = 128;
 
+    /** Shared by file encryption for salts and nonce prefixes. */
+    static final SecureRandom RANDOM = newRandom();
+
     private final SecretKey aesKey;
     private final SecretKey hmacKey;
+    private final SecretKey fileMasterKey;
+    private final SecretKey blindIndexKey;
+
+    private final Timer encryptTimer;
+    private final Timer decryptTimer;
+    private final Timer hmacTimer;
+    private final Timer blindIndexTimer;
 
     public FieldEncryptionService(
-            @Value("${app.encryption.secret:${APP_ENCRYPTION_PASSWORD:password@1app}}") String rawSecret) {
+            @Value("${app.encryption.secret:${APP_ENCRYPTION_PASSWORD:password@1app}}") String rawSecret,
+            MeterRegistry meterRegistry) {
         byte[] hash = sha256(rawSecret.getBytes(StandardCharsets.UTF_8));
         this.aesKey = new SecretKeySpec(Arrays.copyOf(hash, 32), "AES");
         this.hmacKey = new SecretKeySpec(sha256(("HMAC:" + rawSecret).getBytes(StandardCharsets.UTF_8)), "HmacSHA256");
+        this.fileMasterKey = new SecretKeySpec(sha256(("FILE:" + rawSecret).getBytes(StandardCharsets.UTF_8)),
+                "HmacSHA256");
+        this.blindIndexKey = new SecretKeySpec(sha256(("BLIND:" + rawSecret).getBytes(StandardCharsets.UTF_8)),
+                "HmacSHA256");
+        this.encryptTimer = cryptoTimer(meterRegistry, "encrypt");
+        this.decryptTimer = cryptoTimer(meterRegistry, "decrypt");
+        this.hmacTimer = cryptoTimer(meterRegistry, "hmac");
+        this.blindIndexTimer = cryptoTimer(meterRegistry, "blind_index");
+    }
+
+    private static Timer cryptoTimer(MeterRegistry registry, String op) {
+        return Timer.builder("bookurmedical.crypto")
+                .description("Field-level encryption operations")
+                .tag("op", op)
+                .register(registry);
     }
 
     // ── Random AES-GCM (for storage) ─────────────────────────────────────────
@@ -64,6 +103,7 @@ public class FieldEncryptionService {
     public String encrypt(String plain) {
         if (plain == null || plain.isBlank() || isEncrypted(plain))
             return plain;
+        long start = System.nanoTime();
         try {
             byte[] iv = newIv();
             Cipher c = Cipher.getInstance(ALGORITHM);
@@ -75,6 +115,10 @@ public class FieldEncryptionService {
             return RAND_PREFIX + Base64.getUrlEncoder().encodeToString(buf.array());
         } catch (Exception e) {
             throw new RuntimeException("Encryption failed", e);
+        } finally {
+            long nanos = System.nanoTime() - start;
+            encryptTimer.record(nanos, TimeUnit.NANOSECONDS);
+            ServerTiming.record("encrypt", nanos);
         }
     }
 
@@ -82,6 +126,7 @@ public class FieldEncryptionService {
     public String decrypt(String cipher) {
         if (cipher == null || cipher.isBlank() || !cipher.startsWith(RAND_PREFIX))
             return cipher;
+        long start = System.nanoTime();
         try {
             byte[] data = Base64.getUrlDecoder().decode(cipher.substring(RAND_PREFIX.length()));
             ByteBuffer buf = ByteBuffer.wrap(data);
@@ -94,6 +139,10 @@ public class FieldEncryptionService {
             return new String(c.doFinal(ct), StandardCharsets.UTF_8);
         } catch (Exception e) {
             throw new RuntimeException("Decryption failed", e);
+        } finally {
+            long nanos = System.nanoTime() - start;
+            decryptTimer.record(nanos, TimeUnit.NANOSECONDS);
+            ServerTiming.record("decrypt", nanos);
         }
     }
 
@@ -107,6 +156,7 @@ public class FieldEncryptionService {
     public String encryptDeterministic(String plain) {
         if (plain == null || plain.isBlank())
             return plain;
+        long start = System.nanoTime();
         try {
             Mac mac = Mac.getInstance("HmacSHA256");
             mac.init(hmacKey);
@@ -114,6 +164,93 @@ public class FieldEncryptionService {
             return DET_PREFIX + Base64.getUrlEncoder().encodeToString(tag);
         } catch (Exception e) {
             throw new RuntimeException("Deterministic encryption failed", e);
+        } finally {
+            long nanos = System.nanoTime() - start;
+            hmacTimer.record(nanos, TimeUnit.NANOSECONDS);
+            ServerTiming.record("hmac", nanos);
+        }
+    }
+
+    // ── Blind indexes (for searching free-text encrypted fields) ─────────────
+
+    /**
+     * Blind-index tokens for free text: the text is normalised (accents
+     * stripped, lower-cased, split into words) and every word is HMAC'd under
+     * a dedicated key, scoped by {@code domain} so equal words in different
+     * fields do not match. With {@code prefixes}, every prefix of 3+ chars is
+     * also indexed (marked "p:") to support starts-with search.
+     *
+     * Tokens are truncated to 96 bits — ample for matching, and they are never
+     * reversible.
+     */
+    public Set<String> blindIndexTokens(String domain, String text, boolean prefixes) {
+        Set<String> tokens = new LinkedHashSet<>();
+        if (text == null || text.isBlank())
+            return tokens;
+        long start = System.nanoTime();
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(blindIndexKey);
+            for (String word : normalizeWords(text)) {
+                tokens.add(blindToken(mac, domain + "|w:" + word));
+                if (prefixes) {
+                    for (int len = 3; len <= word.length(); len++)
+                        tokens.add(blindToken(mac, domain + "|p:" + word.substring(0, len)));
+                }
+            }
+            return tokens;
+        } catch (Exception e) {
+            throw new RuntimeException("Blind index generation failed", e);
+        } finally {
+            long nanos = System.nanoTime() - start;
+            blindIndexTimer.record(nanos, TimeUnit.NANOSECONDS);
+            ServerTiming.record("blind-index", nanos);
+        }
+    }
+
+    /** Query-side token for one search word (whole word or prefix). */
+    public String blindIndexQueryToken(String domain, String word, boolean prefix) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(blindIndexKey);
+            return blindToken(mac, domain + (prefix ? "|p:" : "|w:") + word);
+        } catch (Exception e) {
+            throw new RuntimeException("Blind index generation failed", e);
+        }
+    }
+
+    /** Lower-cased, accent-free words of 2+ letters/digits. */
+    public static List<String> normalizeWords(String text) {
+        String folded = Normalizer.normalize(text, Normalizer.Form.NFKD)
+                .replaceAll("\\p{M}+", "")
+                .toLowerCase(Locale.ROOT);
+        List<String> words = new ArrayList<>();
+        for (String word : folded.split("[^\\p{L}\\p{N}]+")) {
+            if (word.length() >= 2)
+                words.add(word);
+        }
+        return words;
+    }
+
+    private static String blindToken(Mac mac, String input) {
+        byte[] tag = mac.doFinal(input.getBytes(StandardCharsets.UTF_8));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(tag, 12));
+    }
+
+    // ── File keys (for uploaded files at rest) ───────────────────────────────
+
+    /**
+     * Derives a per-file AES-256 key from the application secret and the
+     * random salt stored in the file header (HKDF-style, HMAC-SHA256).
+     */
+    public SecretKey deriveFileKey(byte[] salt) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(fileMasterKey);
+            mac.update(salt);
+            return new SecretKeySpec(mac.doFinal("file-segment-key".getBytes(StandardCharsets.UTF_8)), "AES");
+        } catch (Exception e) {
+            throw new RuntimeException("File key derivation failed", e);
         }
     }
 
@@ -125,10 +262,23 @@ public class FieldEncryptionService {
 
     private static byte[] newIv() {
         byte[] iv = new byte[IV_LEN];
-        new SecureRandom().nextBytes(iv);
+        RANDOM.nextBytes(iv);
         return iv;
     }
 
+    /**
+     * One shared DRBG instead of a new SecureRandom per call: construction
+     * seeds from the OS entropy source under a lock (pinning virtual threads
+     * while it blocks), whereas DRBG output is a short in-memory computation.
+     */
+    private static SecureRandom newRandom() {
+        try {
+            return SecureRandom.getInstance("DRBG");
+        } catch (Exception e) {
+            return new SecureRandom();
+        }
+    }
+
     private static byte[] sha256(byte[] input) {
         try {
             return MessageDigest.getInstance("SHA-256").digest(input);
@@ -0,0 +1,240 @@
+package com.bookurmedical.service;
+
+import com.bookurmedical.service.FileEncryptionService.Header;
+import com.bookurmedical.storage.BlobInfo;
+import com.bookurmedical.storage.BlobStore;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+
+/**
+ * Serves stored upload files (from the configured {@link BlobStore}) with
+ * HTTP caching and byte-range support.
+ *
+ * - Strong ETag + Last-Modified : uploads are immutable (written once under a
+ * random name), so size + mtime identify the exact bytes.
+ * - If-None-Match / If-Modified-Since → 304 without touching the file body.
+ * - Range: bytes=a-b | a- | -n (single range) → 206, honouring If-Range.
+ * - Encrypted files (see FileEncryptionService) are decrypted on the fly,
+ * reading only the segments that overlap the requested range.
+ * - Legacy plaintext files on local disk are sent zero-copy: Tomcat sendfile
+ * when the connector offers it, otherwise FileChannel.transferTo into the
+ * response channel. Heap use does not depend on the file size either way.
+ */
+@Service
+public class FileDownloadService {
+
+    // Tomcat's sendfile request attributes (org.apache.coyote.Constants)
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private static final long TRANSFER_CHUNK = 8L * 1024 * 1024;
+
+    @Autowired
+    private FileEncryptionService fileEncryptionService;
+
+    @Autowired
+    private BlobStore blobStore;
+
+    /**
+     * Writes blob {@code key} to the response, honouring conditional and range
+     * headers. {@code downloadName} is the name presented to the client.
+     *
+     * @return false if the blob does not exist (nothing has been written)
+     */
+    public boolean serve(String key, String downloadName, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        Optional<BlobInfo> info = blobStore.stat(key);
+        if (info.isEmpty())
+            return false;
+
+        long storedLength = info.get().size();
+        Header header = readHeader(key, storedLength);
+        long length = header != null ? header.plaintextLength(storedLength) : storedLength;
+        long lastModified = info.get().lastModified().toEpochMilli() / 1000 * 1000; // HTTP dates have second precision
+        String etag = "\"" + Long.toHexString(storedLength) + "-" + Long.toHexString(lastModified) + "\"";
+
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+
+        if (isNotModified(request, etag, lastModified)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return true;
+        }
+
+        long start = 0;
+        long end = length - 1;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        if (range != null && ifRangeMatches(request, etag, lastModified)) {
+            long[] parsed = parseRange(range, length);
+            if (parsed == null) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return true;
+            }
+            if (parsed.length == 2) {
+                start = parsed[0];
+                end = parsed[1];
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            }
+        }
+
+        long count = end - start + 1;
+        response.setContentType(MediaTypeFactory.getMediaType(downloadName)
+                .orElse(MediaType.APPLICATION_OCTET_STREAM).toString());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.inline()
+                .filename(downloadName, StandardCharsets.UTF_8).build().toString());
+        response.setContentLengthLong(count);
+
+        if ("HEAD".equalsIgnoreCase(request.getMethod()) || count == 0)
+            return true;
+
+        if (header != null) {
+            long offset = header.segmentOffset(start / header.segmentSize());
+            try (InputStream segments = blobStore.open(key, offset, storedLength - offset)) {
+                fileEncryptionService.decryptRange(header, segments, storedLength, start, end,
+                        response.getOutputStream());
+            }
+            return true;
+        }
+
+        Optional<Path> local = blobStore.localPath(key);
+        if (local.isEmpty()) {
+            try (InputStream in = blobStore.open(key, start, count)) {
+                in.transferTo(response.getOutputStream());
+            }
+            return true;
+        }
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+            // Tomcat streams the file with sendfile(2) once the servlet returns
+            request.setAttribute(SENDFILE_FILENAME, local.get().toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return true;
+        }
+
+        try (FileChannel channel = FileChannel.open(local.get(), StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = count;
+            while (remaining > 0) {
+                long sent = channel.transferTo(position, Math.min(remaining, TRANSFER_CHUNK), out);
+                if (sent <= 0)
+                    break;
+                position += sent;
+                remaining -= sent;
+            }
+        }
+        return true;
+    }
+
+    private Header readHeader(String key, long storedLength) throws IOException {
+        if (storedLength < FileEncryptionService.HEADER_LEN)
+            return null;
+        try (InputStream in = blobStore.open(key, 0, FileEncryptionService.HEADER_LEN)) {
+            return fileEncryptionService.readHeader(in);
+        }
+    }
+
+    // ── Conditional requests ──────────────────────────────────────────────────
+
+    private boolean isNotModified(HttpServletRequest request, String etag, long lastModified) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            return etagListMatches(ifNoneMatch, etag);
+        }
+        long ifModifiedSince = parseDateHeader(request, HttpHeaders.IF_MODIFIED_SINCE);
+        return ifModifiedSince >= 0 && lastModified <= ifModifiedSince;
+    }
+
+    private boolean ifRangeMatches(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null)
+            return true;
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/"))
+            return ifRange.trim().equals(etag); // strong comparison only
+        long date = parseDateHeader(request, HttpHeaders.IF_RANGE);
+        return date >= 0 && lastModified == date;
+    }
+
+    private static boolean etagListMatches(String header, String etag) {
+        for (String candidate : header.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*"))
+                return true;
+            if (tag.startsWith("W/"))
+                tag = tag.substring(2);
+            if (tag.equals(etag))
+                return true;
+        }
+        return false;
+    }
+
+    private static long parseDateHeader(HttpServletRequest request, String name) {
+        try {
+            return request.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    // ── Range parsing ─────────────────────────────────────────────────────────
+
+    /**
+     * Returns {start, end} (inclusive) for a satisfiable single range, an empty
+     * array when the header should be ignored (multiple ranges / malformed),
+     * or null when the range is unsatisfiable.
+     */
+    static long[] parseRange(String header, long length) {
+        if (!header.startsWith("bytes="))
+            return new long[0];
+        String spec = header.substring(6).trim();
+        if (spec.contains(","))
+            return new long[0]; // multipart/byteranges not supported → full body
+        int dash = spec.indexOf('-');
+        if (dash < 0)
+            return new long[0];
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            long start;
+            long end;
+            if (first.isEmpty()) {
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0)
+                    return null;
+                start = Math.max(0, length - suffix);
+                end = length - 1;
+            } else {
+                start = Long.parseLong(first);
+                end = last.isEmpty() ? length - 1 : Math.min(Long.parseLong(last), length - 1);
+            }
+            if (start >= length || start > end)
+                return null;
+            return new long[] { start, end };
+        } catch (NumberFormatException e) {
+            return new long[0];
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package com.bookurmedical.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Segmented streaming encryption for uploaded files at rest.
+ *
+ * File layout:
+ *
+ * ┌─────────────────────────── header (32 bytes) ───────────────────────────┐
+ * │ magic "BUMF" (4) │ version (1) │ segment size (4) │ salt (16) │ prefix (7) │
+ * └──────────────────────────────────────────────────────────────────────────┘
+ * │ segment 0 : AES-256-GCM(plain[0 .. S)) + 16-byte tag │
+ * │ segment 1 : AES-256-GCM(plain[S .. 2S)) + 16-byte tag │
+ * │ ... │
+ * │ segment n-1 : last (possibly short or empty) segment + tag │
+ *
+ * - Per-file key = HKDF(app secret, salt) via FieldEncryptionService.
+ * - Nonce(i) = prefix (7) ‖ i (4, big-endian) ‖ last-segment flag (1), so
+ * segments cannot be reordered, dropped or the file truncated undetected.
+ * - Every segment is authenticated on its own, so a ranged read decrypts only
+ * the segments overlapping the range, and both directions run in memory
+ * bounded by one segment regardless of the file size.
+ */
+@Service
+public class FileEncryptionService {
+
+    public static final int HEADER_LEN = 32;
+    private static final byte[] MAGIC = { 'B', 'U', 'M', 'F' };
+    private static final byte VERSION = 1;
+    private static final String ALGORITHM = "AES/GCM/NoPadding";
+    private static final int SALT_LEN = 16;
+    private static final int PREFIX_LEN = 7;
+    private static final int TAG_LEN = 16;
+
+    /**
+     * Accepted segment sizes, for the configured value and for headers read
+     * back: the decrypt buffers are allocated from the header, which comes
+     * from an untrusted file.
+     */
+    static final int MIN_SEGMENT_SIZE = 1024;
+    static final int MAX_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+    @Autowired
+    private FieldEncryptionService fieldEncryptionService;
+
+    @Value("${app.storage.encryption.segment-size:65536}")
+    private int segmentSize;
+
+    @PostConstruct
+    public void validateSegmentSize() {
+        if (segmentSize < MIN_SEGMENT_SIZE || segmentSize > MAX_SEGMENT_SIZE)
+            throw new IllegalStateException("app.storage.encryption.segment-size must be between "
+                    + MIN_SEGMENT_SIZE + " and " + MAX_SEGMENT_SIZE + ", was " + segmentSize);
+    }
+
+    /** Parsed file header; everything needed to decrypt any segment. */
+    public record Header(int segmentSize, byte[] salt, byte[] noncePrefix) {
+
+        /** Size of one full ciphertext segment (plaintext + tag). */
+        public long ciphertextSegmentSize() {
+            return (long) segmentSize + TAG_LEN;
+        }
+
+        /** Offset of segment {@code index} within the encrypted file. */
+        public long segmentOffset(long index) {
+            return HEADER_LEN + index * ciphertextSegmentSize();
+        }
+
+        public long segmentCount(long ciphertextLength) {
+            long body = ciphertextLength - HEADER_LEN;
+            return Math.max(1, (body + ciphertextSegmentSize() - 1) / ciphertextSegmentSize());
+        }
+
+        public long plaintextLength(long ciphertextLength) {
+            return ciphertextLength - HEADER_LEN - segmentCount(ciphertextLength) * TAG_LEN;
+        }
+    }
+
+    // ── Encrypt ───────────────────────────────────────────────────────────────
+
+    /**
+     * Encrypts {@code in} into {@code out} segment by segment.
+     *
+     * @return number of plaintext bytes consumed
+     */
+    public long encrypt(InputStream in, OutputStream out) throws IOException {
+        byte[] salt = new byte[SALT_LEN];
+        byte[] prefix = new byte[PREFIX_LEN];
+        FieldEncryptionService.RANDOM.nextBytes(salt);
+        FieldEncryptionService.RANDOM.nextBytes(prefix);
+        Header header = new Header(segmentSize, salt, prefix);
+        out.write(encodeHeader(header));
+
+        SecretKey key = fieldEncryptionService.deriveFileKey(salt);
+        Cipher cipher = newCipher();
+        byte[] current = new byte[segmentSize];
+        byte[] next = new byte[segmentSize];
+        byte[] sealed = new byte[segmentSize + TAG_LEN];
+
+        // Read one segment ahead so the final segment can be flagged as such
+        int currentLen = in.readNBytes(current, 0, segmentSize);
+        long total = 0;
+        for (long index = 0;; index++) {
+            int nextLen = currentLen == segmentSize ? in.readNBytes(next, 0, segmentSize) : 0;
+            boolean last = nextLen == 0;
+            int sealedLen = crypt(cipher, Cipher.ENCRYPT_MODE, key, header, index, last,
+                    current, currentLen, sealed);
+            out.write(sealed, 0, sealedLen);
+            total += currentLen;
+            if (last)
+                return total;
+
+            byte[] swap = current;
+            current = next;
+            next = swap;
+            currentLen = nextLen;
+        }
+    }
+
+    // ── Decrypt ───────────────────────────────────────────────────────────────
+
+    /**
+     * Reads and validates the header at the start of an encrypted file.
+     * Returns null when the bytes are not in this format (e.g. legacy
+     * plaintext uploads).
+     */
+    public Header readHeader(InputStream in) throws IOException {
+        byte[] raw = in.readNBytes(HEADER_LEN);
+        return raw.length == HEADER_LEN ? decodeHeader(raw) : null;
+    }
+
+    /**
+     * @throws IOException for a file in this format whose segment size is
+     *                     out of range (corrupt or crafted header)
+     */
+    public Header decodeHeader(byte[] raw) throws IOException {
+        if (raw.length < HEADER_LEN || !Arrays.equals(raw, 0, MAGIC.length, MAGIC, 0, MAGIC.length)
+                || raw[4] != VERSION)
+            return null;
+        ByteBuffer buf = ByteBuffer.wrap(raw, 5, HEADER_LEN - 5);
+        int size = buf.getInt();
+        // Not treated as plaintext: the magic matched, so serving the bytes as-is would leak ciphertext
+        if (size < MIN_SEGMENT_SIZE || size > MAX_SEGMENT_SIZE)
+            throw new IOException("Encrypted file header has an invalid segment size: " + size);
+        byte[] salt = new byte[SALT_LEN];
+        byte[] prefix = new byte[PREFIX_LEN];
+        buf.get(salt);
+        buf.get(prefix);
+        return new Header(size, salt, prefix);
+    }
+
+    /**
+     * Decrypts plaintext bytes [start, end] (inclusive) of an encrypted file
+     * into {@code out}. {@code segments} must be positioned at
+     * {@code header.segmentOffset(start / segmentSize)}; only the segments
+     * overlapping the range are read and authenticated.
+     */
+    public void decryptRange(Header header, InputStream segments, long ciphertextLength,
+            long start, long end, OutputStream out) throws IOException {
+        if (end < start)
+            return;
+        SecretKey key = fieldEncryptionService.deriveFileKey(header.salt());
+        Cipher cipher = newCipher();
+        long segmentCount = header.segmentCount(ciphertextLength);
+        int segCt = (int) header.ciphertextSegmentSize();
+        byte[] sealed = new byte[segCt];
+        byte[] plain = new byte[header.segmentSize()];
+
+        long first = start / header.segmentSize();
+        long lastNeeded = end / header.segmentSize();
+        for (long index = first; index <= lastNeeded; index++) {
+            boolean last = index == segmentCount - 1;
+            int sealedLen = last
+                    ? (int) (ciphertextLength - header.segmentOffset(index))
+                    : segCt;
+            if (segments.readNBytes(sealed, 0, sealedLen) != sealedLen)
+                throw new IOException("Encrypted file is truncated at segment " + index);
+            int plainLen = crypt(cipher, Cipher.DECRYPT_MODE, key, header, index, last,
+                    sealed, sealedLen, plain);
+
+            long segStart = index * header.segmentSize();
+            int from = (int) Math.max(0, start - segStart);
+            int to = (int) Math.min(plainLen, end - segStart + 1);
+            if (to > from)
+                out.write(plain, from, to - from);
+        }
+    }
+
+    /**
+     * Returns a stream of the whole plaintext. {@code segments} must be
+     * positioned just after the header; segments are decrypted lazily one at
+     * a time as the stream is read.
+     */
+    public InputStream decryptingStream(Header header, InputStream segments, long ciphertextLength) {
+        SecretKey key = fieldEncryptionService.deriveFileKey(header.salt());
+        long segmentCount = header.segmentCount(ciphertextLength);
+        int segCt = (int) header.ciphertextSegmentSize();
+
+        return new InputStream() {
+            private final byte[] sealed = new byte[segCt];
+            private final byte[] plain = new byte[header.segmentSize()];
+            private Cipher cipher;
+            private long index;
+            private int pos;
+            private int limit;
+
+            @Override
+            public int read() throws IOException {
+                byte[] one = new byte[1];
+                return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                while (pos == limit) {
+                    if (index >= segmentCount)
+                        return -1;
+                    if (cipher == null)
+                        cipher = newCipher();
+                    boolean last = index == segmentCount - 1;
+                    int sealedLen = last ? (int) (ciphertextLength - header.segmentOffset(index)) : segCt;
+                    if (segments.readNBytes(sealed, 0, sealedLen) != sealedLen)
+                        throw new IOException("Encrypted file is truncated at segment " + index);
+                    limit = crypt(cipher, Cipher.DECRYPT_MODE, key, header, index, last, sealed, sealedLen, plain);
+                    pos = 0;
+                    index++;
+                }
+                int n = Math.min(len, limit - pos);
+                System.arraycopy(plain, pos, b, off, n);
+                pos += n;
+                return n;
+            }
+
+            @Override
+            public void close() throws IOException {
+                segments.close();
+            }
+        };
+    }
+
+    // ── Helpers ───────────────────────────────────────────────────────────────
+
+    private int crypt(Cipher cipher, int mode, SecretKey key, Header header, long index, boolean last,
+            byte[] input, int inputLen, byte[] output) throws IOException {
+        try {
+            cipher.init(mode, key, new GCMParameterSpec(TAG_LEN * 8, nonce(header.noncePrefix(), index, last)));
+            return cipher.doFinal(input, 0, inputLen, output, 0);
+        } catch (Exception e) {
+            throw new IOException("Segment " + index + " failed to " +
+                    (mode == Cipher.ENCRYPT_MODE ? "encrypt" : "authenticate"), e);
+        }
+    }
+
+    private static byte[] nonce(byte[] prefix, long index, boolean last) {
+        if (index > 0xFFFFFFFFL)
+            throw new IllegalArgumentException("File too large for segment counter");
+        return ByteBuffer.allocate(PREFIX_LEN + 5)
+                .put(prefix)
+                .putInt((int) index)
+                .put((byte) (last ? 1 : 0))
+                .array();
+    }
+
+    private static byte[] encodeHeader(Header header) {
+        return ByteBuffer.allocate(HEADER_LEN)
+                .put(MAGIC)
+                .put(VERSION)
+                .putInt(header.segmentSize())
+                .put(header.salt())
+                .put(header.noncePrefix())
+                .array();
+    }
+
+    private static Cipher newCipher() throws IOException {
+        try {
+            return Cipher.getInstance(ALGORITHM);
+        } catch (Exception e) {
+            throw new IOException("AES-GCM unavailable", e);
+        }
+    }
+}
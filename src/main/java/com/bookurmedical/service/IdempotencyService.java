@@ -0,0 +1,279 @@
+package com.bookurmedical.service;
+
+import com.bookurmedical.entity.IdempotencyRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Runs a request at most once per Idempotency-Key.
+ *
+ * - The first request with a key claims it (an in-progress record with a
+ * lease) and runs; a successful (2xx) response is stored for {@code ttl}.
+ * Failures release the key, so the client's retry runs again.
+ * - Retries of a completed request get the stored response, from a small
+ * in-memory cache or from Mongo.
+ * - A duplicate arriving while the first is still running on this instance
+ * waits for it and gets the same response; on another instance it gets 409
+ * (retry shortly).
+ * - Reusing a key for a different request (other fingerprint) gets 422.
+ *
+ * Keys are scoped per user and endpoint.
+ */
+@Service
+public class IdempotencyService {
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyService.class);
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final int MAX_KEY_LENGTH = 255;
+
+    /** A finished request: what to answer its duplicates with. */
+    private record Outcome(String fingerprint, ResponseEntity<String> response, Instant expiresAt) {
+    }
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Value("${app.idempotency.ttl:PT24H}")
+    private Duration ttl;
+
+    @Value("${app.idempotency.lease:PT2M}")
+    private Duration lease;
+
+    private final Map<String, CompletableFuture<Outcome>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, Outcome> recent;
+
+    public IdempotencyService(@Value("${app.idempotency.cache-size:1000}") int cacheSize) {
+        this.recent = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Outcome> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * @throws IllegalArgumentException if the key is blank or too long
+     */
+    public static void validateKey(String key) {
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH)
+            throw new IllegalArgumentException(HEADER + " must be 1-" + MAX_KEY_LENGTH + " characters");
+    }
+
+    /** SHA-256 over the parts that identify a request. */
+    public static String fingerprint(byte[]... parts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (byte[] part : parts) {
+                digest.update(part);
+                digest.update((byte) 0);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Hex SHA-256 of a stream's content, read to the end (the caller closes it). */
+    public static String contentDigest(InputStream in) throws IOException {
+        try {
+            DigestInputStream digesting = new DigestInputStream(in, MessageDigest.getInstance("SHA-256"));
+            digesting.transferTo(OutputStream.nullOutputStream());
+            return HexFormat.of().formatHex(digesting.getMessageDigest().digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static String fingerprint(String... parts) {
+        byte[][] bytes = new byte[parts.length][];
+        for (int i = 0; i < parts.length; i++)
+            bytes[i] = String.valueOf(parts[i]).getBytes(StandardCharsets.UTF_8);
+        return fingerprint(bytes);
+    }
+
+    /**
+     * Runs {@code action} unless this request already ran (or is running)
+     * under the same key, in which case its response is returned instead.
+     */
+    public CompletableFuture<ResponseEntity<String>> execute(String username, String endpoint, String key,
+            String fingerprint, Supplier<CompletableFuture<ResponseEntity<String>>> action) {
+        String id = username + ":" + endpoint + ":" + key;
+
+        Outcome cached = cached(id);
+        if (cached != null)
+            return CompletableFuture.completedFuture(replay(cached, fingerprint));
+
+        CompletableFuture<Outcome> mine = new CompletableFuture<>();
+        CompletableFuture<Outcome> running = inFlight.putIfAbsent(id, mine);
+        if (running != null)
+            return running.thenApply(outcome -> replay(outcome, fingerprint));
+
+        IdempotencyRecord claimed;
+        try {
+            claimed = claim(id, fingerprint);
+        } catch (RuntimeException e) {
+            inFlight.remove(id, mine);
+            mine.completeExceptionally(e);
+            throw e;
+        }
+        if (claimed != null) {
+            // Already recorded: completed earlier, or running elsewhere
+            inFlight.remove(id, mine);
+            Outcome outcome;
+            if (claimed.isCompleted()) {
+                outcome = new Outcome(claimed.getFingerprint(),
+                        ResponseEntity.status(claimed.getResponseStatus()).body(claimed.getResponseBody()),
+                        claimed.getExpiresAt());
+                remember(id, outcome);
+            } else {
+                outcome = new Outcome(claimed.getFingerprint(), inProgress(), null);
+            }
+            mine.complete(outcome);
+            return CompletableFuture.completedFuture(replay(outcome, fingerprint));
+        }
+
+        CompletableFuture<ResponseEntity<String>> result;
+        try {
+            result = action.get();
+        } catch (RuntimeException e) {
+            finish(id, mine, fingerprint, null, e);
+            throw e;
+        }
+        return result.whenComplete((response, error) -> finish(id, mine, fingerprint, response, error));
+    }
+
+    // ── Store ─────────────────────────────────────────────────────────────────
+
+    /**
+     * Claims the key. Returns null when this request may run; otherwise the
+     * existing record (completed, or in progress under a live lease).
+     */
+    private IdempotencyRecord claim(String id, String fingerprint) {
+        Instant now = Instant.now();
+        try {
+            mongoTemplate.insert(new IdempotencyRecord(id, fingerprint, false, null, null, now.plus(lease),
+                    now.plus(ttl)));
+            return null;
+        } catch (DuplicateKeyException e) {
+            // fall through
+        }
+
+        // Take over an abandoned attempt whose lease ran out
+        IdempotencyRecord takenOver = mongoTemplate.findAndModify(
+                Query.query(Criteria.where("_id").is(id).and("completed").is(false).and("lockedUntil").lt(now)
+                        .and("fingerprint").is(fingerprint)),
+                new Update().set("lockedUntil", now.plus(lease)).set("expiresAt", now.plus(ttl)),
+                FindAndModifyOptions.options().returnNew(true),
+                IdempotencyRecord.class);
+        if (takenOver != null) {
+            log.info("[Idempotency] Took over abandoned request {}", id);
+            return null;
+        }
+        IdempotencyRecord existing = mongoTemplate.findById(id, IdempotencyRecord.class);
+        // Expired and removed in between: claim again
+        return existing != null ? existing : claim(id, fingerprint);
+    }
+
+    private void finish(String id, CompletableFuture<Outcome> mine, String fingerprint,
+            ResponseEntity<String> response, Throwable error) {
+        try {
+            if (error == null && response.getStatusCode().is2xxSuccessful()) {
+                Instant expiresAt = Instant.now().plus(ttl);
+                Outcome outcome = new Outcome(fingerprint, response, expiresAt);
+                mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(id)),
+                        new Update().set("completed", true)
+                                .set("responseStatus", response.getStatusCode().value())
+                                .set("responseBody", response.getBody())
+                                .set("expiresAt", expiresAt)
+                                .unset("lockedUntil"),
+                        IdempotencyRecord.class);
+                remember(id, outcome);
+            } else {
+                mongoTemplate.remove(Query.query(Criteria.where("_id").is(id).and("completed").is(false)),
+                        IdempotencyRecord.class);
+            }
+        } catch (RuntimeException e) {
+            log.warn("[Idempotency] Could not record outcome of {}: {}", id, e.getMessage());
+        } finally {
+            inFlight.remove(id, mine);
+            if (error != null)
+                mine.completeExceptionally(error);
+            else
+                mine.complete(new Outcome(fingerprint, response, null));
+        }
+    }
+
+    // ── Front cache ───────────────────────────────────────────────────────────
+
+    private Outcome cached(String id) {
+        synchronized (recent) {
+            Outcome outcome = recent.get(id);
+            if (outcome != null && outcome.expiresAt() != null && outcome.expiresAt().isBefore(Instant.now())) {
+                recent.remove(id);
+                return null;
+            }
+            return outcome;
+        }
+    }
+
+    private void remember(String id, Outcome outcome) {
+        synchronized (recent) {
+            recent.put(id, outcome);
+        }
+    }
+
+    // ── Responses ─────────────────────────────────────────────────────────────
+
+    /** The duplicate's answer: the original response, marked as replayed if it succeeded. */
+    private static ResponseEntity<String> replay(Outcome outcome, String fingerprint) {
+        if (!outcome.fingerprint().equals(fingerprint))
+            return mismatch();
+        ResponseEntity<String> response = outcome.response();
+        if (!response.getStatusCode().is2xxSuccessful())
+            return response;
+        return ResponseEntity.status(response.getStatusCode())
+                .headers(response.getHeaders())
+                .header(REPLAYED_HEADER, "true")
+                .body(response.getBody());
+    }
+
+    private static ResponseEntity<String> inProgress() {
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .header("Retry-After", "1")
+                .body("Error: A request with this " + HEADER + " is still in progress.");
+    }
+
+    private static ResponseEntity<String> mismatch() {
+        return ResponseEntity.unprocessableEntity()
+                .body("Error: This " + HEADER + " was already used for a different request.");
+    }
+}
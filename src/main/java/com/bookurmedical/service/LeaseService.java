@@ -0,0 +1,102 @@
+package com.bookurmedical.service;
+
+import com.mongodb.client.result.UpdateResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Named, time-limited leases in Mongo (scheduler_leases), so that a
+ * scheduled job firing on every instance does its work on one at a time.
+ *
+ * A lease is one document { _id: name, owner, lockedUntil }. Acquiring is a
+ * single upsert that only matches a missing or expired lease; while another
+ * instance holds it, the upsert collides on _id and the acquire fails. An
+ * instance that dies mid-job simply lets its lease run out.
+ */
+@Service
+public class LeaseService {
+
+    private static final Logger log = LoggerFactory.getLogger(LeaseService.class);
+
+    static final String COLLECTION = "scheduler_leases";
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    private final String instanceId = hostName() + "-" + UUID.randomUUID();
+
+    /** The lease, or empty while another instance holds it. */
+    public Optional<Lease> tryAcquire(String name, Duration duration) {
+        Instant now = Instant.now();
+        try {
+            mongoTemplate.upsert(
+                    Query.query(Criteria.where("_id").is(name).and("lockedUntil").lt(now)),
+                    new Update().set("owner", instanceId).set("acquiredAt", now)
+                            .set("lockedUntil", now.plus(duration)),
+                    COLLECTION);
+            return Optional.of(new Lease(name, duration));
+        } catch (DuplicateKeyException e) {
+            return Optional.empty();
+        }
+    }
+
+    /** A held lease; closing it releases the lease for the next run. */
+    public final class Lease implements AutoCloseable {
+
+        private final String name;
+        private final Duration duration;
+
+        private Lease(String name, Duration duration) {
+            this.name = name;
+            this.duration = duration;
+        }
+
+        /**
+         * Extends the lease by its duration. Call before each step that must
+         * not overlap with another instance.
+         *
+         * @throws IllegalStateException if another instance has taken it over
+         */
+        public void renew() {
+            UpdateResult result = mongoTemplate.updateFirst(owned(),
+                    new Update().set("lockedUntil", Instant.now().plus(duration)), COLLECTION);
+            if (result.getMatchedCount() == 0)
+                throw new IllegalStateException("Lease '" + name + "' was taken over by another instance");
+        }
+
+        @Override
+        public void close() {
+            try {
+                mongoTemplate.updateFirst(owned(), new Update().set("lockedUntil", Instant.now()), COLLECTION);
+            } catch (RuntimeException e) {
+                log.warn("[Lease] Could not release '{}', it expires on its own: {}", name, e.getMessage());
+            }
+        }
+
+        private Query owned() {
+            return Query.query(Criteria.where("_id").is(name).and("owner").is(instanceId));
+        }
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "unknown";
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.bookurmedical.service;
+
+import com.bookurmedical.annotation.Encrypted;
+import com.bookurmedical.annotation.SecondaryReads;
+import com.bookurmedical.entity.MedicalCaseSheet;
+import com.bookurmedical.entity.MedicalCaseSheetRevision;
+import com.bookurmedical.repository.MedicalCaseSheetRevisionRepository;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Append-only, delta-encoded history of case sheets.
+ *
+ * Every revision stores only the encrypted fields it changed; every
+ * {@code snapshotInterval}-th revision stores all fields, and so does any
+ * revision whose predecessor was never recorded (the first one for a sheet,
+ * or the one after a failed write). Each recorded revision is therefore
+ * reachable from a snapshot through unbroken deltas, and rebuilding revision
+ * N costs two indexed reads — the nearest snapshot ≤ N and the deltas after
+ * it — no matter how long the history is.
+ */
+@Service
+public class MedicalCaseSheetHistoryService {
+
+    private static final Logger log = LoggerFactory.getLogger(MedicalCaseSheetHistoryService.class);
+
+    @Autowired
+    private MedicalCaseSheetRevisionRepository revisionRepository;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private FieldEncryptionService encryptionService;
+
+    @Value("${app.case-sheet.history.snapshot-interval:10}")
+    private int snapshotInterval;
+
+    // ── Write ─────────────────────────────────────────────────────────────────
+
+    /**
+     * Records a revision. {@code written} is the raw (still encrypted) sheet
+     * document after the update; {@code setFields} / {@code removedFields}
+     * describe the update itself.
+     */
+    public void record(Document written, Map<String, String> setFields, List<String> removedFields) {
+        long revision = ((Number) written.get("revision")).longValue();
+        String caseSheetId = String.valueOf(written.get("_id"));
+        try {
+            boolean snapshot = (revision - 1) % snapshotInterval == 0
+                    || !revisionRepository.existsByCaseSheetIdAndRevision(caseSheetId, revision - 1);
+
+            Map<String, String> fields = setFields;
+            if (snapshot) {
+                fields = new HashMap<>();
+                for (Map.Entry<String, Object> entry : written.entrySet()) {
+                    if (!MedicalCaseSheetService.MANAGED_FIELDS.contains(entry.getKey()) && entry.getValue() instanceof String value)
+                        fields.put(entry.getKey(), value);
+                }
+            }
+
+            revisionRepository.insert(new MedicalCaseSheetRevision(null, caseSheetId, written.getString("userId"),
+                    revision, Instant.now(), snapshot, fields, snapshot ? List.of() : removedFields));
+        } catch (Exception e) {
+            // The sheet itself is already written; the next revision finds this one missing and snapshots
+            log.warn("[History] Could not record revision {} of case sheet {}: {}", revision, caseSheetId,
+                    e.getMessage());
+        }
+    }
+
+    // ── Read ──────────────────────────────────────────────────────────────────
+
+    /** The sheet as it was at {@code revision}, or empty if unknown. */
+    @SecondaryReads
+    public Optional<MedicalCaseSheet> asOfRevision(String caseSheetId, long revision) {
+        Optional<MedicalCaseSheetRevision> snapshot = revisionRepository
+                .findFirstByCaseSheetIdAndSnapshotTrueAndRevisionLessThanEqualOrderByRevisionDesc(caseSheetId,
+                        revision);
+        if (snapshot.isEmpty())
+            return Optional.empty();
+
+        Map<String, String> fields = new HashMap<>(snapshot.get().getFields());
+        long reached = snapshot.get().getRevision();
+        for (MedicalCaseSheetRevision delta : revisionRepository
+                .findByCaseSheetIdAndRevisionGreaterThanAndRevisionLessThanEqualOrderByRevisionAsc(caseSheetId,
+                        reached, revision)) {
+            if (delta.getFields() != null)
+                fields.putAll(delta.getFields());
+            if (delta.getRemovedFields() != null)
+                delta.getRemovedFields().forEach(fields::remove);
+            reached = delta.getRevision();
+        }
+        if (reached != revision)
+            return Optional.empty(); // gap in history
+
+        return Optional.of(toCaseSheet(caseSheetId, snapshot.get().getUserId(), revision, fields));
+    }
+
+    /** The sheet as it was at a point in time, or empty if it did not exist yet. */
+    @SecondaryReads
+    public Optional<MedicalCaseSheet> asOf(String caseSheetId, Instant at) {
+        return revisionRepository.findFirstByCaseSheetIdAndCreatedAtLessThanEqualOrderByCreatedAtDesc(caseSheetId, at)
+                .flatMap(rev -> asOfRevision(caseSheetId, rev.getRevision()));
+    }
+
+    private MedicalCaseSheet toCaseSheet(String caseSheetId, String userId, long revision, Map<String, String> fields) {
+        MongoPersistentEntity<?> entity = mongoTemplate.getConverter().getMappingContext()
+                .getRequiredPersistentEntity(MedicalCaseSheet.class);
+        Document document = new Document();
+        for (MongoPersistentProperty property : entity) {
+            String value = fields.get(property.getFieldName());
+            if (value == null)
+                continue;
+            document.put(property.getFieldName(),
+                    property.isAnnotationPresent(Encrypted.class) ? encryptionService.decrypt(value) : value);
+        }
+        MedicalCaseSheet sheet = mongoTemplate.getConverter().read(MedicalCaseSheet.class, document);
+        sheet.setId(caseSheetId);
+        sheet.setUserId(userId);
+        sheet.setRevision(revision);
+        return sheet;
+    }
+}
@@ -0,0 +1,432 @@
+package com.bookurmedical.service;
+
+import com.bookurmedical.annotation.CausalWrites;
+import com.bookurmedical.annotation.Encrypted;
+import com.bookurmedical.annotation.SecondaryReads;
+import com.bookurmedical.cache.CacheInvalidationBus;
+import com.bookurmedical.cache.InvalidatingCache;
+import com.bookurmedical.dto.CaseSheetSummary;
+import com.bookurmedical.entity.MedicalCaseSheet;
+import com.bookurmedical.entity.VitalReading;
+import com.bookurmedical.repository.MedicalCaseSheetRepository;
+import jakarta.annotation.PostConstruct;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mapping.PersistentPropertyAccessor;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/**
+ * Writes a user's single case sheet as field-level diffs.
+ *
+ * submit() compares the incoming sheet with the stored one and sends only
+ * the changed fields as $set / $unset, so only those are re-encrypted and
+ * written. The whole update is one upsert keyed on the existing _id (or
+ * userId for a first submission), so resubmitting never creates a second
+ * document. Concurrent first submissions are serialised by the unique userId
+ * index: the loser's upsert fails and is retried as an update of the winner's
+ * sheet.
+ *
+ * Each write is also appended to the sheet's delta history
+ * (MedicalCaseSheetHistoryService), reusing the ciphertexts computed here.
+ *
+ * Update operations bypass the BeforeSaveEvent encryption listener, so
+ * @Encrypted values are encrypted here explicitly.
+ */
+@Service
+public class MedicalCaseSheetService {
+
+    private static final Logger log = LoggerFactory.getLogger(MedicalCaseSheetService.class);
+
+    /** Server-managed fields that are never taken from client input. */
+    static final Set<String> MANAGED_FIELDS = Set.of("_id", "_class", "userId", "revision", "updatedAt",
+            "diagnosisIndex", "allergyIndex");
+
+    /** Blind-index array field → the encrypted text fields it is built from. */
+    static final Map<String, List<String>> BLIND_INDEXES = Map.of(
+            "diagnosisIndex", List.of("primaryDiagnosis", "secondaryDiagnosis", "conditions"),
+            "allergyIndex", List.of("allergies"));
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private MedicalCaseSheetRepository medicalCaseSheetRepository;
+
+    @Autowired
+    private FieldEncryptionService encryptionService;
+
+    @Autowired
+    private MedicalCaseSheetHistoryService historyService;
+
+    @Autowired
+    private VitalsService vitalsService;
+
+    @Autowired
+    private CacheInvalidationBus cacheInvalidationBus;
+
+    @Value("${app.search.blind-index.prefixes:true}")
+    private boolean blindIndexPrefixes;
+
+    @Value("${app.cache.case-sheet-versions.ttl:PT5M}")
+    private Duration versionCacheTtl;
+
+    @Value("${app.cache.case-sheet-versions.max-size:10000}")
+    private int versionCacheMaxSize;
+
+    /** userId → current sheet version, for If-None-Match checks without a Mongo round trip. */
+    private InvalidatingCache<String, SheetVersion> versionCache;
+
+    @PostConstruct
+    public void createCache() {
+        versionCache = cacheInvalidationBus.newCache("case-sheet-versions",
+                mongoTemplate.getCollectionName(MedicalCaseSheet.class), versionCacheTtl, versionCacheMaxSize,
+                SheetVersion::id);
+    }
+
+    /**
+     * Named groups of fields for projected reads (?fields=vitals,diagnosis).
+     * Individual field names are accepted as well.
+     */
+    public static final Map<String, List<String>> FIELD_GROUPS = Map.ofEntries(
+            Map.entry("patient", List.of("name", "address", "dob", "contactInformation")),
+            Map.entry("physical", List.of("height", "weight", "sex")),
+            Map.entry("vitals", List.of("heartRate", "spo2", "bloodPressure", "respiratoryRate")),
+            Map.entry("diagnosis", List.of("primaryDiagnosis", "secondaryDiagnosis")),
+            Map.entry("history", List.of("chiefComplaint", "historyOfPresentingIllness", "physicalExamination")),
+            Map.entry("files", MedicalCaseSheet.FILE_FIELDS),
+            Map.entry("medicalHistory", List.of("presentOngoingTreatment", "previousMedicalHistory")),
+            Map.entry("surgical", List.of("surgeries", "conditions")),
+            Map.entry("allergies", List.of("allergies", "reaction")),
+            Map.entry("progressNotes", List.of("progressNotes")));
+
+    /** Id and revision of a sheet — enough to build a cache validator. */
+    public record SheetVersion(String id, long revision) {
+    }
+
+    /** Result of a submit: the sheet id, its revision and the fields written. */
+    public record SubmitResult(String id, long revision, List<String> changedFields) {
+    }
+
+    @CausalWrites
+    public SubmitResult submit(String userId, MedicalCaseSheet incoming) {
+        return submit(userId, incoming, true);
+    }
+
+    private SubmitResult submit(String userId, MedicalCaseSheet incoming, boolean retryOnConflict) {
+        MedicalCaseSheet existing = medicalCaseSheetRepository.findFirstByUserIdOrderByIdDesc(userId).orElse(null);
+
+        MongoPersistentEntity<?> entity = mongoTemplate.getConverter().getMappingContext()
+                .getRequiredPersistentEntity(MedicalCaseSheet.class);
+        PersistentPropertyAccessor<MedicalCaseSheet> incomingValues = entity.getPropertyAccessor(incoming);
+        PersistentPropertyAccessor<MedicalCaseSheet> existingValues = existing != null
+                ? entity.getPropertyAccessor(existing)
+                : null;
+
+        Update update = new Update();
+        List<String> changed = new ArrayList<>();
+        Map<String, String> setFields = new HashMap<>();
+        List<String> removedFields = new ArrayList<>();
+        for (MongoPersistentProperty property : entity) {
+            String field = property.getFieldName();
+            if (MANAGED_FIELDS.contains(field))
+                continue;
+
+            Object newValue = normalize(incomingValues.getProperty(property));
+            Object oldValue = existingValues != null ? normalize(existingValues.getProperty(property)) : null;
+            if (Objects.equals(newValue, oldValue))
+                continue;
+
+            changed.add(field);
+            if (newValue == null) {
+                update.unset(field);
+                removedFields.add(field);
+            } else if (property.isAnnotationPresent(Encrypted.class) && newValue instanceof String plain) {
+                String encrypted = encryptionService.encrypt(plain);
+                update.set(field, encrypted);
+                setFields.put(field, encrypted);
+            } else {
+                update.set(field, newValue);
+                if (newValue instanceof String plain)
+                    setFields.put(field, plain);
+            }
+        }
+
+        updateBlindIndexes(update, incomingValues, existingValues, entity, changed);
+
+        if (existing != null && changed.isEmpty()) {
+            return new SubmitResult(existing.getId(), existing.getRevision() != null ? existing.getRevision() : 0,
+                    changed);
+        }
+
+        update.inc("revision", 1).set("updatedAt", Instant.now());
+        Query target = existing != null
+                ? Query.query(Criteria.where("_id").is(documentId(existing.getId())))
+                : Query.query(Criteria.where("userId").is(userId));
+
+        // Raw document comes back still encrypted — history snapshots copy it without decrypting
+        Document written;
+        try {
+            written = mongoTemplate.findAndModify(target, update,
+                    FindAndModifyOptions.options().upsert(true).returnNew(true),
+                    Document.class, mongoTemplate.getCollectionName(MedicalCaseSheet.class));
+        } catch (DuplicateKeyException e) {
+            // A concurrent first submit (double click, retry) inserted the sheet after our read:
+            // the unique userId index rejected this insert, so diff against that sheet and update it instead
+            if (existing != null || !retryOnConflict)
+                throw e;
+            log.debug("[CaseSheet] Concurrent first submit for user {}, retrying as an update", userId);
+            return submit(userId, incoming, false);
+        }
+        // Updates publish no lifecycle event; evict locally now, other instances via the change stream
+        cacheInvalidationBus.invalidate(mongoTemplate.getCollectionName(MedicalCaseSheet.class), written.get("_id"));
+        historyService.record(written, setFields, removedFields);
+        recordVitals(userId, incomingValues, entity, changed);
+        return new SubmitResult(String.valueOf(written.get("_id")), ((Number) written.get("revision")).longValue(),
+                changed);
+    }
+
+    /**
+     * Rebuilds a blind index whenever one of its source fields changed, or
+     * when a sheet written before blind indexes existed is touched.
+     */
+    private void updateBlindIndexes(Update update, PersistentPropertyAccessor<MedicalCaseSheet> values,
+            PersistentPropertyAccessor<MedicalCaseSheet> existingValues, MongoPersistentEntity<?> entity,
+            List<String> changed) {
+        BLIND_INDEXES.forEach((indexField, sources) -> {
+            boolean missing = existingValues != null
+                    && existingValues.getProperty(entity.getRequiredPersistentProperty(indexField)) == null;
+            if (sources.stream().noneMatch(changed::contains) && !(missing && !changed.isEmpty()))
+                return;
+            Set<String> tokens = new LinkedHashSet<>();
+            for (String source : sources) {
+                Object text = values.getProperty(entity.getRequiredPersistentProperty(source));
+                tokens.addAll(encryptionService.blindIndexTokens(indexField, (String) text, blindIndexPrefixes));
+            }
+            update.set(indexField, new ArrayList<>(tokens));
+        });
+    }
+
+    /** Vitals entered on the sheet also become time-series readings. */
+    private void recordVitals(String userId, PersistentPropertyAccessor<MedicalCaseSheet> values,
+            MongoPersistentEntity<?> entity, List<String> changed) {
+        Instant now = Instant.now();
+        List<VitalReading> readings = new ArrayList<>();
+        for (String type : VitalsService.TYPES) {
+            if (!changed.contains(type))
+                continue;
+            Object raw = values.getProperty(entity.getRequiredPersistentProperty(type));
+            String value = vitalsService.normalize(type, (String) raw);
+            if (value != null)
+                readings.add(vitalsService.reading(userId, type, value, now));
+        }
+        try {
+            vitalsService.record(readings);
+        } catch (Exception e) {
+            log.warn("[Vitals] Could not record vitals from case sheet for user {}: {}", userId, e.getMessage());
+        }
+    }
+
+    // ── Projected reads ───────────────────────────────────────────────────────
+
+    /**
+     * Resolves group and field names to Mongo field names.
+     *
+     * @throws IllegalArgumentException for an unknown name
+     */
+    public Set<String> resolveFields(Collection<String> selection) {
+        MongoPersistentEntity<?> entity = mongoTemplate.getConverter().getMappingContext()
+                .getRequiredPersistentEntity(MedicalCaseSheet.class);
+        Set<String> fields = new TreeSet<>();
+        for (String name : selection) {
+            List<String> group = FIELD_GROUPS.get(name);
+            if (group != null) {
+                fields.addAll(group);
+            } else if (entity.getPersistentProperty(name) != null && !MANAGED_FIELDS.contains(name)) {
+                fields.add(entity.getRequiredPersistentProperty(name).getFieldName());
+            } else {
+                throw new IllegalArgumentException("Unknown field or group: " + name);
+            }
+        }
+        return fields;
+    }
+
+    /** Latest sheet's id and revision, read from the covering index only (and cached). */
+    public Optional<SheetVersion> currentVersion(String userId) {
+        return Optional.ofNullable(versionCache.get(userId, () -> {
+            Query query = latestFor(userId);
+            query.fields().include("_id", "revision");
+            Document version = mongoTemplate.findOne(query, Document.class,
+                    mongoTemplate.getCollectionName(MedicalCaseSheet.class));
+            return version != null ? versionOf(version) : null;
+        }));
+    }
+
+    /**
+     * Loads only {@code fields} of the user's sheet. The projection is pushed
+     * down to Mongo, so the encryption listener decrypts just those fields.
+     */
+    public Optional<Map<String, Object>> findProjected(String userId, Set<String> fields) {
+        Query query = latestFor(userId);
+        query.fields().include("_id", "revision");
+        fields.forEach(field -> query.fields().include(field));
+
+        MedicalCaseSheet sheet = mongoTemplate.findOne(query, MedicalCaseSheet.class);
+        if (sheet == null)
+            return Optional.empty();
+
+        MongoPersistentEntity<?> entity = mongoTemplate.getConverter().getMappingContext()
+                .getRequiredPersistentEntity(MedicalCaseSheet.class);
+        PersistentPropertyAccessor<MedicalCaseSheet> values = entity.getPropertyAccessor(sheet);
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("id", sheet.getId());
+        result.put("revision", sheet.getRevision() != null ? sheet.getRevision() : 0L);
+        for (String field : fields) {
+            MongoPersistentProperty property = entity.getPersistentProperty(field);
+            if (property != null)
+                result.put(property.getName(), values.getProperty(property));
+        }
+        return Optional.of(result);
+    }
+
+    // ── Blind-index search ────────────────────────────────────────────────────
+
+    /**
+     * Finds sheets whose diagnosis / allergy text contains every word of the
+     * given terms (or words starting with them, when {@code prefix} is set),
+     * using only the HMAC token arrays — nothing is decrypted except the
+     * summary fields of the matches.
+     */
+    @SecondaryReads
+    public List<CaseSheetSummary> search(String diagnosis, String allergy, boolean prefix, int limit) {
+        List<Criteria> clauses = new ArrayList<>();
+        if (diagnosis != null && !diagnosis.isBlank())
+            clauses.add(Criteria.where("diagnosisIndex").all(queryTokens("diagnosisIndex", diagnosis, prefix)));
+        if (allergy != null && !allergy.isBlank())
+            clauses.add(Criteria.where("allergyIndex").all(queryTokens("allergyIndex", allergy, prefix)));
+        if (clauses.isEmpty())
+            throw new IllegalArgumentException("Specify a diagnosis and/or allergy term");
+        Query query = Query.query(new Criteria().andOperator(clauses)).limit(limit);
+        query.fields().include(SUMMARY_FIELDS.toArray(String[]::new));
+        return mongoTemplate.find(query, MedicalCaseSheet.class).stream()
+                .map(MedicalCaseSheetService::toSummary)
+                .toList();
+    }
+
+    private List<String> queryTokens(String indexField, String term, boolean prefix) {
+        List<String> words = FieldEncryptionService.normalizeWords(term);
+        if (words.isEmpty() || (prefix && words.stream().anyMatch(w -> w.length() < 3)))
+            throw new IllegalArgumentException("Search terms need at least " + (prefix ? 3 : 2) + " characters");
+        if (prefix && !blindIndexPrefixes)
+            throw new IllegalArgumentException("Prefix search is disabled");
+        return words.stream().map(w -> encryptionService.blindIndexQueryToken(indexField, w, prefix)).toList();
+    }
+
+    // ── Clinician worklist ────────────────────────────────────────────────────
+
+    /** One page of the worklist; {@code nextCursor} is null on the last page. */
+    public record SummaryPage(List<CaseSheetSummary> items, String nextCursor) {
+    }
+
+    /**
+     * Lists case sheets newest first, paging by keyset on {@code _id} rather
+     * than offset: each page is one index range scan starting after the
+     * cursor, so page 1000 costs the same as page 1, and sheets created while
+     * paging never shift or duplicate rows. Only the summary fields are
+     * projected, so only those are decrypted.
+     */
+    @SecondaryReads
+    public SummaryPage list(String cursor, int limit) {
+        Query query = new Query();
+        if (cursor != null && !cursor.isBlank())
+            query.addCriteria(Criteria.where("_id").lt(documentId(decodeCursor(cursor))));
+        query.with(Sort.by(Sort.Direction.DESC, "_id")).limit(limit + 1);
+        query.fields().include(SUMMARY_FIELDS.toArray(String[]::new));
+
+        List<CaseSheetSummary> items = mongoTemplate.find(query, MedicalCaseSheet.class).stream()
+                .map(MedicalCaseSheetService::toSummary)
+                .collect(Collectors.toCollection(ArrayList::new));
+        String next = null;
+        if (items.size() > limit) {
+            items.remove(limit);
+            next = encodeCursor(items.get(limit - 1).getId());
+        }
+        return new SummaryPage(items, next);
+    }
+
+    private static String encodeCursor(String id) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(id.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decodeCursor(String cursor) {
+        String id;
+        try {
+            id = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        if (!ObjectId.isValid(id))
+            throw new IllegalArgumentException("Invalid cursor");
+        return id;
+    }
+
+    /** Fields decrypted for a listing / search row. */
+    static final List<String> SUMMARY_FIELDS = List.of("_id", "userId", "name", "chiefComplaint",
+            "primaryDiagnosis", "updatedAt");
+
+    static CaseSheetSummary toSummary(MedicalCaseSheet sheet) {
+        return new CaseSheetSummary(sheet.getId(), sheet.getUserId(), sheet.getName(), sheet.getChiefComplaint(),
+                sheet.getPrimaryDiagnosis(), sheet.getUpdatedAt());
+    }
+
+    private static Query latestFor(String userId) {
+        return Query.query(Criteria.where("userId").is(userId))
+                .with(Sort.by(Sort.Direction.DESC, "_id"))
+                .limit(1);
+    }
+
+    private static SheetVersion versionOf(Document document) {
+        Object revision = document.get("revision");
+        return new SheetVersion(String.valueOf(document.get("_id")),
+                revision instanceof Number n ? n.longValue() : 0L);
+    }
+
+    /** Raw-Document queries skip id conversion, so map ObjectId strings explicitly. */
+    static Object documentId(String id) {
+        return ObjectId.isValid(id) ? new ObjectId(id) : id;
+    }
+
+    /** Blank strings are stored as-is by the listener; treat them as absent for diffing. */
+    private static Object normalize(Object value) {
+        return value instanceof String s && s.isBlank() ? null : value;
+    }
+}
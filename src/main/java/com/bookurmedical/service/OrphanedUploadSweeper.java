@@ -0,0 +1,244 @@
+package com.bookurmedical.service;
+
+import com.bookurmedical.entity.MedicalCaseSheet;
+import com.bookurmedical.entity.MedicalCaseSheetRevision;
+import com.bookurmedical.storage.BlobInfo;
+import com.bookurmedical.storage.BlobStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Reclaims uploads that no case sheet references (abandoned submissions,
+ * files replaced by later edits).
+ *
+ * Each run:
+ * 1. streams the file fields of all case sheets and of their history
+ * revisions (projection only) into a Bloom filter of referenced keys — memory
+ * is a few bits per reference, not the key strings themselves. Past revisions
+ * keep their files alive, so asOfRevision never points at a reclaimed blob;
+ * 2. streams the blob store listing and picks blobs older than the grace
+ * period that the filter says are definitely unreferenced (a false positive
+ * only keeps a blob alive, it never removes a referenced one);
+ * 3. quarantines (default) or deletes them in batches and logs the bytes
+ * reclaimed.
+ *
+ * The blob store is shared, so only the instance holding the sweep lease
+ * (LeaseService) runs steps 1-3; the lease is renewed before every batch, and
+ * a run that loses it stops. Every instance also clears stale files from its
+ * own staging area (uploads that failed before they were stored).
+ */
+@Service
+@ConditionalOnProperty(name = "app.storage.sweeper.enabled", havingValue = "true", matchIfMissing = true)
+public class OrphanedUploadSweeper {
+
+    private static final Logger log = LoggerFactory.getLogger(OrphanedUploadSweeper.class);
+    private static final String LEASE = "orphaned-upload-sweep";
+
+    /** Outcome of one sweep. */
+    public record SweepResult(long scanned, long reclaimedFiles, long reclaimedBytes) {
+    }
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private LeaseService leaseService;
+
+    @Autowired
+    private FieldEncryptionService encryptionService;
+
+    @Value("${app.storage.sweeper.lease:PT1H}")
+    private Duration leaseDuration;
+
+    @Value("${app.storage.sweeper.grace-period:PT24H}")
+    private Duration gracePeriod;
+
+    @Value("${app.storage.sweeper.mode:quarantine}")
+    private String mode;
+
+    @Value("${app.storage.sweeper.batch-size:500}")
+    private int batchSize;
+
+    @Scheduled(cron = "${app.storage.sweeper.cron:0 30 3 * * *}")
+    public void scheduledSweep() {
+        try {
+            purgeStaging();
+        } catch (Exception e) {
+            log.error("[Sweeper] Staging cleanup failed: {}", e.getMessage(), e);
+        }
+        try {
+            sweep();
+        } catch (Exception e) {
+            log.error("[Sweeper] Sweep failed: {}", e.getMessage(), e);
+        }
+    }
+
+    /** Deletes this instance's staging files older than the grace period. */
+    public int purgeStaging() throws IOException {
+        int purged = blobStore.purgeStaging(Instant.now().minus(gracePeriod));
+        if (purged > 0)
+            log.info("[Sweeper] Deleted {} stale staging files", purged);
+        return purged;
+    }
+
+    /** Sweeps the blob store, or returns empty if another instance is already sweeping. */
+    public Optional<SweepResult> sweep() throws IOException {
+        Optional<LeaseService.Lease> lease = leaseService.tryAcquire(LEASE, leaseDuration);
+        if (lease.isEmpty()) {
+            log.info("[Sweeper] Another instance holds the sweep lease, skipping");
+            return Optional.empty();
+        }
+        try (LeaseService.Lease held = lease.get()) {
+            return Optional.of(sweep(held));
+        }
+    }
+
+    private SweepResult sweep(LeaseService.Lease lease) throws IOException {
+        Instant cutoff = Instant.now().minus(gracePeriod);
+        BloomFilter referenced = referencedKeys();
+
+        long scanned = 0;
+        long reclaimedFiles = 0;
+        long reclaimedBytes = 0;
+        List<BlobInfo> batch = new ArrayList<>(batchSize);
+        try (Stream<BlobInfo> blobs = blobStore.list()) {
+            Iterator<BlobInfo> it = blobs.iterator();
+            while (it.hasNext()) {
+                BlobInfo blob = it.next();
+                scanned++;
+                if (blob.lastModified().isAfter(cutoff) || referenced.mightContain(ownerKey(blob.key())))
+                    continue;
+                batch.add(blob);
+                if (batch.size() == batchSize) {
+                    lease.renew();
+                    reclaimedBytes += reclaim(batch);
+                    reclaimedFiles += batch.size();
+                    batch.clear();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            lease.renew();
+            reclaimedBytes += reclaim(batch);
+            reclaimedFiles += batch.size();
+        }
+
+        log.info("[Sweeper] Scanned {} blobs, {} {} unreferenced blobs ({} bytes reclaimed)",
+                scanned, "delete".equals(mode) ? "deleted" : "quarantined", reclaimedFiles, reclaimedBytes);
+        return new SweepResult(scanned, reclaimedFiles, reclaimedBytes);
+    }
+
+    // ── Helpers ───────────────────────────────────────────────────────────────
+
+    private BloomFilter referencedKeys() {
+        long sheets = mongoTemplate.estimatedCount(MedicalCaseSheet.class);
+        long revisions = mongoTemplate.estimatedCount(MedicalCaseSheetRevision.class);
+        BloomFilter filter = new BloomFilter(Math.max(1024, sheets * 4 + revisions));
+
+        Query query = new Query().cursorBatchSize(batchSize);
+        MedicalCaseSheet.FILE_FIELDS.forEach(field -> query.fields().include(field));
+        // The encryption listener decrypts only the projected file fields
+        try (Stream<MedicalCaseSheet> stream = mongoTemplate.stream(query, MedicalCaseSheet.class)) {
+            stream.forEach(sheet -> sheet.fileReferences().forEach(filter::put));
+        }
+
+        Query history = new Query().cursorBatchSize(batchSize);
+        MedicalCaseSheet.FILE_FIELDS.forEach(field -> history.fields().include("fields." + field));
+        // Revision values are stored as written to the sheet (ENC::...); a value
+        // that fails to decrypt aborts the run rather than letting its blob go
+        try (Stream<MedicalCaseSheetRevision> stream = mongoTemplate.stream(history, MedicalCaseSheetRevision.class)) {
+            stream.forEach(revision -> {
+                if (revision.getFields() == null)
+                    return;
+                revision.getFields().values().stream()
+                        .map(encryptionService::decrypt)
+                        .filter(key -> key != null && !key.isBlank())
+                        .forEach(filter::put);
+            });
+        }
+        return filter;
+    }
+
+    private long reclaim(List<BlobInfo> batch) throws IOException {
+        List<String> keys = batch.stream().map(BlobInfo::key).toList();
+        if ("delete".equals(mode)) {
+            blobStore.deleteAll(keys);
+        } else {
+            for (String key : keys)
+                blobStore.quarantine(key);
+        }
+        return batch.stream().mapToLong(BlobInfo::size).sum();
+    }
+
+    /** Derived blobs (previews) live and die with their original upload. */
+    private static String ownerKey(String key) {
+        return PreviewService.isPreviewKey(key)
+                ? key.substring(0, key.length() - PreviewService.previewKey("").length())
+                : key;
+    }
+
+    /**
+     * Minimal Bloom filter sized for ~1% false positives (10 bits and 7
+     * hashes per expected key), using double hashing over two 64-bit hashes.
+     */
+    static final class BloomFilter {
+        private static final int HASHES = 7;
+        private final long[] bits;
+        private final long bitCount;
+
+        BloomFilter(long expectedKeys) {
+            long words = Math.max(1, (expectedKeys * 10 + 63) / 64);
+            this.bits = new long[(int) Math.min(words, Integer.MAX_VALUE - 8)];
+            this.bitCount = (long) bits.length * 64;
+        }
+
+        void put(String key) {
+            long[] h = hashes(key);
+            for (int i = 0; i < HASHES; i++) {
+                long bit = Math.floorMod(h[0] + i * h[1], bitCount);
+                bits[(int) (bit >>> 6)] |= 1L << bit;
+            }
+        }
+
+        boolean mightContain(String key) {
+            long[] h = hashes(key);
+            for (int i = 0; i < HASHES; i++) {
+                long bit = Math.floorMod(h[0] + i * h[1], bitCount);
+                if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0)
+                    return false;
+            }
+            return true;
+        }
+
+        private static long[] hashes(String key) {
+            long h1 = 0xcbf29ce484222325L; // FNV-1a
+            long h2 = 0x9E3779B97F4A7C15L;
+            for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+                h1 = (h1 ^ (b & 0xff)) * 0x100000001b3L;
+                h2 = Long.rotateLeft(h2 ^ (b & 0xff), 31) * 0xbf58476d1ce4e5b9L;
+            }
+            h2 ^= h2 >>> 29;
+            return new long[] { h1, h2 | 1 };
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package com.bookurmedical.service;
+
+import com.bookurmedical.service.FileEncryptionService.Header;
+import com.bookurmedical.storage.BlobInfo;
+import com.bookurmedical.storage.BlobStore;
+import jakarta.annotation.PreDestroy;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.RandomAccessReadBuffer;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Background generation of downscaled JPEG previews for uploaded imaging
+ * files (anything ImageIO can decode) and first-page renders of PDF reports.
+ *
+ * - Runs on a bounded worker pool; when the queue is full the preview is
+ * skipped rather than slowing down uploads (the original stays available).
+ * - Images are decoded with source subsampling, so a large X-ray is never
+ * fully materialised in memory just to produce a thumbnail.
+ * - Previews are encrypted like any other upload and stored next to the
+ * original under {@link #previewKey(String)}.
+ * - {@link #status(String)} tells clients whether a file's preview is ready
+ * (GET /api/medical-history/previews).
+ */
+@Service
+public class PreviewService {
+
+    private static final Logger log = LoggerFactory.getLogger(PreviewService.class);
+    private static final String PREVIEW_SUFFIX = ".preview.jpg";
+
+    /** Where a file's preview stands. */
+    public enum Status {
+        /** Stored; served by /files/{name}/preview. */
+        READY,
+        /** Queued or rendering (here or, for a recent upload, on another instance). */
+        PENDING,
+        /** Skipped (queue full, too large, no decoder) or failed; the original is still available. */
+        UNAVAILABLE
+    }
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Autowired
+    private FileEncryptionService fileEncryptionService;
+
+    @Value("${app.previews.max-dimension:512}")
+    private int maxDimension;
+
+    @Value("${app.previews.max-pdf-bytes:26214400}")
+    private long maxPdfBytes;
+
+    @Value("${app.previews.pending-window:PT10M}")
+    private Duration pendingWindow;
+
+    private final ThreadPoolExecutor executor;
+
+    /** Keys queued or rendering on this instance. */
+    private final Set<String> inProgress = ConcurrentHashMap.newKeySet();
+
+    public PreviewService(@Value("${app.previews.workers:2}") int workers,
+            @Value("${app.previews.queue-capacity:100}") int queueCapacity) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+                    Thread t = new Thread(r, "preview-" + threadNumber.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    /** Storage key of the preview derived from {@code key}. */
+    public static String previewKey(String key) {
+        return key + PREVIEW_SUFFIX;
+    }
+
+    public static boolean isPreviewKey(String key) {
+        return key.endsWith(PREVIEW_SUFFIX);
+    }
+
+    /** Images and PDFs get previews; other file types never do. */
+    public static boolean isPreviewable(String key) {
+        MediaType type = MediaTypeFactory.getMediaType(key).orElse(MediaType.APPLICATION_OCTET_STREAM);
+        return MediaType.APPLICATION_PDF.includes(type) || "image".equals(type.getType());
+    }
+
+    /** Queues preview generation for a freshly stored upload, if it is previewable. */
+    public void schedule(String key) {
+        if (!isPreviewable(key))
+            return;
+        boolean pdf = MediaTypeFactory.getMediaType(key).filter(MediaType.APPLICATION_PDF::includes).isPresent();
+        inProgress.add(key);
+        try {
+            executor.execute(() -> {
+                try {
+                    generate(key, pdf);
+                } finally {
+                    inProgress.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inProgress.remove(key);
+            log.warn("[Preview] Queue full, skipping preview for '{}'", key);
+        }
+    }
+
+    /**
+     * Preview status of an upload, or empty for a file type that never gets
+     * one. Without a stored preview, an upload younger than pending-window
+     * counts as PENDING even if another instance is rendering it.
+     */
+    public Optional<Status> status(String key) throws IOException {
+        if (!isPreviewable(key))
+            return Optional.empty();
+        if (blobStore.stat(previewKey(key)).isPresent())
+            return Optional.of(Status.READY);
+        if (inProgress.contains(key))
+            return Optional.of(Status.PENDING);
+        Optional<BlobInfo> original = blobStore.stat(key);
+        boolean recent = original.isPresent()
+                && original.get().lastModified().isAfter(Instant.now().minus(pendingWindow));
+        return Optional.of(recent ? Status.PENDING : Status.UNAVAILABLE);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // ── Generation ────────────────────────────────────────────────────────────
+
+    private void generate(String key, boolean pdf) {
+        try {
+            Optional<BlobInfo> info = blobStore.stat(key);
+            if (info.isEmpty())
+                return;
+            if (pdf && info.get().size() > maxPdfBytes) {
+                log.info("[Preview] '{}' is too large to render ({} bytes)", key, info.get().size());
+                return;
+            }
+
+            BufferedImage preview;
+            try (InputStream plain = openPlaintext(key, info.get().size())) {
+                preview = pdf ? renderFirstPage(plain) : downscale(plain);
+            }
+            if (preview == null) {
+                log.info("[Preview] No decoder for '{}'", key);
+                return;
+            }
+            store(previewKey(key), preview);
+        } catch (Exception e) {
+            log.warn("[Preview] Could not generate preview for '{}': {}", key, e.getMessage());
+        }
+    }
+
+    private BufferedImage downscale(InputStream in) throws IOException {
+        try (ImageInputStream iis = ImageIO.createImageInputStream(in)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+            if (!readers.hasNext())
+                return null;
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(iis, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+
+                // Decode at roughly twice the target size, then smooth-scale the rest
+                int subsampling = Math.max(1, Math.max(width, height) / (maxDimension * 2));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return scale(reader.read(0, param));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private BufferedImage renderFirstPage(InputStream in) throws IOException {
+        try (PDDocument document = Loader.loadPDF(new RandomAccessReadBuffer(in))) {
+            if (document.getNumberOfPages() == 0)
+                return null;
+            float pageWidth = document.getPage(0).getMediaBox().getWidth();
+            float pageHeight = document.getPage(0).getMediaBox().getHeight();
+            float scale = maxDimension / Math.max(pageWidth, pageHeight);
+            return new PDFRenderer(document).renderImage(0, scale, ImageType.RGB);
+        }
+    }
+
+    private BufferedImage scale(BufferedImage source) {
+        double factor = Math.min(1.0, (double) maxDimension / Math.max(source.getWidth(), source.getHeight()));
+        int width = Math.max(1, (int) Math.round(source.getWidth() * factor));
+        int height = Math.max(1, (int) Math.round(source.getHeight() * factor));
+
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = target.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return target;
+    }
+
+    // ── Storage ───────────────────────────────────────────────────────────────
+
+    private InputStream openPlaintext(String key, long storedLength) throws IOException {
+        Header header = null;
+        if (storedLength >= FileEncryptionService.HEADER_LEN) {
+            try (InputStream in = blobStore.open(key, 0, FileEncryptionService.HEADER_LEN)) {
+                header = fileEncryptionService.readHeader(in);
+            }
+        }
+        if (header == null)
+            return blobStore.open(key, 0, storedLength); // legacy plaintext upload
+
+        InputStream segments = blobStore.open(key, FileEncryptionService.HEADER_LEN,
+                storedLength - FileEncryptionService.HEADER_LEN);
+        return fileEncryptionService.decryptingStream(header, segments, storedLength);
+    }
+
+    private void store(String key, BufferedImage image) throws IOException {
+        ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(jpeg)) {
+            writer.setOutput(ios);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(0.8f);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+
+        Path staged = blobStore.createStagingFile(key);
+        try (OutputStream out = Files.newOutputStream(staged)) {
+            fileEncryptionService.encrypt(new ByteArrayInputStream(jpeg.toByteArray()), out);
+        } catch (IOException e) {
+            Files.deleteIfExists(staged);
+            throw e;
+        }
+        blobStore.put(key, staged).join();
+    }
+}
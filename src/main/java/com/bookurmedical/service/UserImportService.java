@@ -0,0 +1,444 @@
+package com.bookurmedical.service;
+
+import com.bookurmedical.annotation.Encrypted;
+import com.bookurmedical.dto.SignupRequest;
+import com.bookurmedical.entity.User;
+import com.bookurmedical.service.EmailService.VerificationEmail;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.model.InsertManyOptions;
+import jakarta.annotation.PreDestroy;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Bulk patient onboarding for partner facilities (CSV or NDJSON).
+ *
+ * - Rows are validated and deduplicated in memory: against each other, and
+ * against existing usernames / email hashes with one $in query per chunk.
+ * - BCrypt hashing and PII encryption run on a bounded worker pool, one task
+ * per accepted row; the encrypted documents are written with unordered
+ * insertMany batches, so one bad row does not fail its batch.
+ * - Verification emails go to the mail pool as one queued task per import
+ * instead of one SMTP send per request.
+ *
+ * Every input row gets an entry in the report: created (with its id),
+ * rejected (validation / duplicate) or failed (write error).
+ */
+@Service
+public class UserImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(UserImportService.class);
+
+    public static final String CREATED = "created";
+    public static final String REJECTED = "rejected";
+    public static final String FAILED = "failed";
+
+    private static final int LOOKUP_CHUNK = 1000;
+    private static final Pattern DUPLICATE_KEY_INDEX = Pattern.compile("index: (\\S+) dup key");
+
+    public record RowResult(int row, String username, String status, String id, String error) {
+    }
+
+    public record ImportReport(int created, int rejected, int failed, List<RowResult> rows) {
+    }
+
+    /** An accepted row, ready to be hashed, encrypted and inserted. */
+    private record Pending(int index, SignupRequest request, String emailHash) {
+    }
+
+    /** A pending row's insertable document and the mail to send once it is stored. */
+    private record Prepared(Document document, VerificationEmail email) {
+    }
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private FieldEncryptionService encryptionService;
+
+    @Autowired
+    private EmailService emailService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${app.import.max-rows:10000}")
+    private int maxRows;
+
+    @Value("${app.import.batch-size:500}")
+    private int batchSize;
+
+    private final ThreadPoolExecutor executor;
+
+    public UserImportService(@Value("${app.import.workers:0}") int workers) {
+        int threads = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread t = new Thread(r, "import-" + threadNumber.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // ── Parsing ───────────────────────────────────────────────────────────────
+
+    /**
+     * CSV with a header row naming the signup fields (username, email,
+     * password, role, firstName, lastName, phoneNumber); quoted values may
+     * contain commas, quotes ("") and line breaks.
+     *
+     * @throws IllegalArgumentException on a malformed file or too many rows
+     */
+    public List<SignupRequest> parseCsv(Reader in) throws IOException {
+        BufferedReader reader = new BufferedReader(in);
+        List<String> header = readCsvRecord(reader);
+        if (header == null)
+            return List.of();
+        List<SignupRequest> rows = new ArrayList<>();
+        List<String> values;
+        while ((values = readCsvRecord(reader)) != null) {
+            if (values.size() == 1 && values.get(0).isBlank())
+                continue;
+            if (values.size() > header.size())
+                throw new IllegalArgumentException("Row " + (rows.size() + 1) + " has more values than the header.");
+            Map<String, String> fields = new LinkedHashMap<>();
+            for (int i = 0; i < values.size(); i++)
+                fields.put(header.get(i).trim(), values.get(i));
+            addRow(rows, objectMapper.convertValue(fields, SignupRequest.class));
+        }
+        return rows;
+    }
+
+    /**
+     * One signup JSON object per line.
+     *
+     * @throws IllegalArgumentException on a malformed line or too many rows
+     */
+    public List<SignupRequest> parseNdjson(Reader in) throws IOException {
+        BufferedReader reader = new BufferedReader(in);
+        List<SignupRequest> rows = new ArrayList<>();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank())
+                continue;
+            try {
+                addRow(rows, objectMapper.readValue(line, SignupRequest.class));
+            } catch (JsonProcessingException e) {
+                throw new IllegalArgumentException("Row " + (rows.size() + 1) + " is not a JSON object: "
+                        + e.getOriginalMessage());
+            }
+        }
+        return rows;
+    }
+
+    private void addRow(List<SignupRequest> rows, SignupRequest row) {
+        if (rows.size() == maxRows)
+            throw new IllegalArgumentException("At most " + maxRows + " rows per import.");
+        rows.add(row);
+    }
+
+    /** One CSV record, or null at end of input. */
+    private static List<String> readCsvRecord(BufferedReader reader) throws IOException {
+        int c = reader.read();
+        if (c == -1)
+            return null;
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (; c != -1; c = reader.read()) {
+            if (quoted) {
+                if (c != '"') {
+                    value.append((char) c);
+                    continue;
+                }
+                reader.mark(1);
+                if (reader.read() == '"') {
+                    value.append('"');
+                } else {
+                    reader.reset();
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(value.toString());
+                value.setLength(0);
+            } else if (c == '\n') {
+                break;
+            } else if (c != '\r') {
+                value.append((char) c);
+            }
+        }
+        if (quoted)
+            throw new IllegalArgumentException("Unterminated quoted value in CSV.");
+        values.add(value.toString());
+        return values;
+    }
+
+    // ── Import ────────────────────────────────────────────────────────────────
+
+    public ImportReport importUsers(List<SignupRequest> rows) {
+        RowResult[] results = new RowResult[rows.size()];
+        List<Pending> pending = validate(rows, results);
+        rejectExisting(pending, results);
+
+        // Hash + encrypt in parallel; batches are inserted in row order as they complete
+        List<String> encryptedFields = encryptedFields();
+        List<Future<Prepared>> futures = new ArrayList<>(pending.size());
+        for (Pending row : pending)
+            futures.add(executor.submit(() -> prepare(row.request(), row.emailHash(), encryptedFields)));
+
+        List<VerificationEmail> emails = new ArrayList<>();
+        try {
+            for (int from = 0; from < pending.size(); from += batchSize) {
+                List<Pending> batch = new ArrayList<>(pending.subList(from, Math.min(from + batchSize,
+                        pending.size())));
+                List<Prepared> prepared = new ArrayList<>(batch.size());
+                for (int i = 0; i < batch.size(); i++) {
+                    Prepared row = await(futures.get(from + i), batch.get(i), results);
+                    if (row != null)
+                        prepared.add(row);
+                }
+                // Rows that failed to prepare already have their FAILED result
+                batch.removeIf(row -> results[row.index()] != null);
+                if (!batch.isEmpty())
+                    insert(batch, prepared, results, emails);
+            }
+        } finally {
+            // Interrupted: drop whatever is still queued
+            futures.forEach(future -> future.cancel(true));
+            // Accounts already inserted must get their mail even if the import is aborted;
+            // a re-import would reject them as taken and leave them unverified
+            if (!emails.isEmpty())
+                emailService.sendVerificationEmails(emails);
+        }
+
+        int created = 0, rejected = 0, failed = 0;
+        for (RowResult result : results) {
+            switch (result.status()) {
+                case CREATED -> created++;
+                case REJECTED -> rejected++;
+                default -> failed++;
+            }
+        }
+        log.info("[Import] {} rows: {} created, {} rejected, {} failed", rows.size(), created, rejected, failed);
+        return new ImportReport(created, rejected, failed, List.of(results));
+    }
+
+    /** Field checks and in-file duplicates; returns the rows still accepted. */
+    private List<Pending> validate(List<SignupRequest> rows, RowResult[] results) {
+        List<Pending> pending = new ArrayList<>();
+        Set<String> usernames = new HashSet<>();
+        Set<String> emailHashes = new HashSet<>();
+        for (int i = 0; i < rows.size(); i++) {
+            SignupRequest row = rows.get(i);
+            String error = validationError(row);
+            if (error == null && !usernames.add(row.getUsername()))
+                error = "Error: Duplicate username in this import.";
+            String emailHash = error == null ? encryptionService.encryptDeterministic(row.getEmail()) : null;
+            if (error == null && !emailHashes.add(emailHash))
+                error = "Error: Duplicate email in this import.";
+            if (error != null)
+                results[i] = rejected(i, row.getUsername(), error);
+            else
+                pending.add(new Pending(i, row, emailHash));
+        }
+        return pending;
+    }
+
+    private static String validationError(SignupRequest row) {
+        if (isBlank(row.getUsername()))
+            return "Error: username is required.";
+        if (isBlank(row.getEmail()) || !row.getEmail().contains("@"))
+            return "Error: A valid email is required.";
+        if (isBlank(row.getPassword()))
+            return "Error: password is required.";
+        // Imports only create patients; clinician roles go through PUT /api/admin/users/{id}/role
+        if (!isBlank(row.getRole()) && !UserService.DEFAULT_ROLE.equals(row.getRole()))
+            return "Error: Imported accounts are always " + UserService.DEFAULT_ROLE + "; grant "
+                    + row.getRole() + " through the role endpoint after import.";
+        return null;
+    }
+
+    /** Rejects rows whose username or email is already registered. */
+    private void rejectExisting(List<Pending> pending, RowResult[] results) {
+        Set<String> takenUsernames = new HashSet<>();
+        Set<String> takenEmailHashes = new HashSet<>();
+        for (int from = 0; from < pending.size(); from += LOOKUP_CHUNK) {
+            List<Pending> chunk = pending.subList(from, Math.min(from + LOOKUP_CHUNK, pending.size()));
+            Query query = Query.query(new Criteria().orOperator(
+                    Criteria.where("username").in(chunk.stream().map(row -> row.request().getUsername()).toList()),
+                    Criteria.where("emailHash").in(chunk.stream().map(Pending::emailHash).toList())));
+            query.fields().include("username", "emailHash");
+            for (Document existing : mongoTemplate.find(query, Document.class,
+                    mongoTemplate.getCollectionName(User.class))) {
+                takenUsernames.add(existing.getString("username"));
+                takenEmailHashes.add(existing.getString("emailHash"));
+            }
+        }
+        pending.removeIf(row -> {
+            String error = takenUsernames.contains(row.request().getUsername())
+                    ? "Error: Username is already taken!"
+                    : takenEmailHashes.contains(row.emailHash()) ? "Error: Email is already in use!" : null;
+            if (error != null)
+                results[row.index()] = rejected(row.index(), row.request().getUsername(), error);
+            return error != null;
+        });
+    }
+
+    /** Same fields as UserService.registerUser, converted and encrypted here instead of by the listener. */
+    private Prepared prepare(SignupRequest request, String emailHash, List<String> encryptedFields) {
+        String verificationToken = UUID.randomUUID().toString();
+
+        User user = new User();
+        user.setId(new ObjectId().toHexString());
+        user.setUsername(request.getUsername());
+        user.setEmail(request.getEmail());
+        user.setEmailHash(emailHash);
+        user.setPassword(passwordEncoder.encode(request.getPassword()));
+        user.setRole(UserService.DEFAULT_ROLE);
+        user.setFirstName(request.getFirstName());
+        user.setLastName(request.getLastName());
+        user.setPhoneNumber(request.getPhoneNumber());
+        user.setEmailVerificationToken(verificationToken);
+        user.setEmailVerificationTokenHash(encryptionService.encryptDeterministic(verificationToken));
+        user.setEmailVerified(false);
+
+        Document document = new Document();
+        mongoTemplate.getConverter().write(user, document);
+        for (String field : encryptedFields) {
+            if (document.get(field) instanceof String value && !value.isBlank())
+                document.put(field, encryptionService.encrypt(value));
+        }
+        return new Prepared(document,
+                new VerificationEmail(request.getEmail(), request.getFirstName(), verificationToken));
+    }
+
+    private void insert(List<Pending> batch, List<Prepared> prepared, RowResult[] results,
+            List<VerificationEmail> emails) {
+        Map<Integer, String> errors = new HashMap<>();
+        try {
+            mongoTemplate.getCollection(mongoTemplate.getCollectionName(User.class))
+                    .insertMany(prepared.stream().map(Prepared::document).toList(),
+                            new InsertManyOptions().ordered(false));
+        } catch (MongoBulkWriteException e) {
+            for (BulkWriteError error : e.getWriteErrors())
+                errors.put(error.getIndex(),
+                        ErrorCategory.fromErrorCode(error.getCode()) == ErrorCategory.DUPLICATE_KEY
+                                ? duplicateKeyError(error.getMessage())
+                                : "Error: Write failed: " + error.getMessage());
+            if (e.getWriteConcernError() != null)
+                log.warn("[Import] Write concern error: {}", e.getWriteConcernError().getMessage());
+        } catch (MongoException e) {
+            log.warn("[Import] Batch of {} users failed: {}", batch.size(), e.getMessage());
+            for (int i = 0; i < batch.size(); i++)
+                errors.put(i, "Error: Write failed: " + e.getMessage());
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            Pending row = batch.get(i);
+            String error = errors.get(i);
+            if (error != null) {
+                results[row.index()] = new RowResult(row.index() + 1, row.request().getUsername(), FAILED, null,
+                        error);
+            } else {
+                Object id = prepared.get(i).document().get("_id");
+                results[row.index()] = new RowResult(row.index() + 1, row.request().getUsername(), CREATED,
+                        id instanceof ObjectId objectId ? objectId.toHexString() : String.valueOf(id), null);
+                emails.add(prepared.get(i).email());
+            }
+        }
+    }
+
+    // ── Helpers ───────────────────────────────────────────────────────────────
+
+    private List<String> encryptedFields() {
+        MongoPersistentEntity<?> entity = mongoTemplate.getConverter().getMappingContext()
+                .getRequiredPersistentEntity(User.class);
+        List<String> fields = new ArrayList<>();
+        for (MongoPersistentProperty property : entity) {
+            if (property.isAnnotationPresent(Encrypted.class))
+                fields.add(property.getFieldName());
+        }
+        return fields;
+    }
+
+    private static RowResult rejected(int index, String username, String error) {
+        return new RowResult(index + 1, username, REJECTED, null, error);
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    /** The prepared row, or null after recording it as FAILED if hashing / encryption threw. */
+    private static Prepared await(Future<Prepared> future, Pending row, RowResult[] results) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Import interrupted", e);
+        } catch (ExecutionException e) {
+            log.warn("[Import] Row {} could not be prepared: {}", row.index() + 1, e.getCause().toString());
+            results[row.index()] = new RowResult(row.index() + 1, row.request().getUsername(), FAILED, null,
+                    "Error: Could not prepare account: " + e.getCause().getMessage());
+            return null;
+        }
+    }
+
+    /** Names the violated unique index ("E11000 ... index: emailHash dup key: {...}"). */
+    private static String duplicateKeyError(String message) {
+        Matcher index = DUPLICATE_KEY_INDEX.matcher(message != null ? message : "");
+        String name = index.find() ? index.group(1) : "";
+        if (name.startsWith("emailHash"))
+            return "Error: Email is already in use!";
+        if (name.startsWith("username"))
+            return "Error: Username is already taken!";
+        return "Error: Duplicate key: " + message;
+    }
+}
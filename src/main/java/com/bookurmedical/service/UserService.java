@@ -5,13 +5,21 @@ import com.bookurmedical.dto.SignupRequest;
 import com.bookurmedical.entity.User;
 import com.bookurmedical.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
+import java.util.Optional;
+import java.util.Set;
+
 @Service
 public class UserService {
 
+    /** Every self-registered (or imported) account starts as a patient. */
+    public static final String DEFAULT_ROLE = "USER";
+
+    /** Roles an admin may grant; ADMIN itself is never assigned through the API. */
+    public static final Set<String> ASSIGNABLE_ROLES = Set.of(DEFAULT_ROLE, "DOCTOR", "CLINICIAN");
+
     @Autowired
     private UserRepository userRepository;
     @Autowired
@@ -21,9 +29,6 @@ public class UserService {
     @Autowired
     private FieldEncryptionService encryptionService;
 
-    @Value("${app.frontend-url}")
-    private String frontendBaseUrl;
-
     // ── Registration ──────────────────────────────────────────────────────────
 
     public void registerUser(SignupRequest signupRequest) {
@@ -44,7 +49,8 @@ public class UserService {
         user.setEmail(signupRequest.getEmail()); // encrypted on save by listener
         user.setEmailHash(emailHash); // HMAC — queryable
         user.setPassword(passwordEncoder.encode(signupRequest.getPassword()));
-        user.setRole(signupRequest.getRole());
+        // Never taken from the request: clinician roles are granted by an admin (changeRole)
+        user.setRole(DEFAULT_ROLE);
         user.setFirstName(signupRequest.getFirstName()); // encrypted on save
         user.setLastName(signupRequest.getLastName()); // encrypted on save
         user.setPhoneNumber(signupRequest.getPhoneNumber()); // encrypted on save
@@ -55,17 +61,34 @@ public class UserService {
 
         userRepository.save(user);
 
-        try {
-            emailService.sendVerificationEmail(
-                    signupRequest.getEmail(), signupRequest.getFirstName(), verificationToken);
-        } catch (Exception e) {
-            String verifyLink = frontendBaseUrl + "/verify-email?token=" + verificationToken;
-            System.out.println("------------------------------------------------");
-            System.out.println("EMAIL VERIFICATION LINK (Dev Mode):");
-            System.out.println(verifyLink);
-            System.out.println("------------------------------------------------");
-            System.err.println("Failed to send verification email (suppressed for dev): " + e.getMessage());
+        // Sent on the mail pool; a failed send prints the dev-mode link there (EmailService.send)
+        emailService.sendVerificationEmail(
+                signupRequest.getEmail(), signupRequest.getFirstName(), verificationToken);
+    }
+
+    // ── Roles ─────────────────────────────────────────────────────────────────
+
+    /**
+     * Admin-only (see SecurityConfig). The user's cached details are evicted
+     * through the change stream, so the new role applies from their next request.
+     *
+     * @return the updated user, or empty if there is no such user
+     * @throws IllegalArgumentException for a role outside ASSIGNABLE_ROLES or an ADMIN target
+     */
+    public Optional<User> changeRole(String userId, String role) {
+        if (role == null || !ASSIGNABLE_ROLES.contains(role)) {
+            throw new IllegalArgumentException("Error: Role must be one of " + ASSIGNABLE_ROLES + ".");
+        }
+        Optional<User> found = userRepository.findById(userId);
+        if (found.isEmpty()) {
+            return found;
+        }
+        User user = found.get();
+        if ("ADMIN".equals(user.getRole())) {
+            throw new IllegalArgumentException("Error: ADMIN accounts cannot be changed through the API.");
         }
+        user.setRole(role);
+        return Optional.of(userRepository.save(user));
     }
 
     // ── Email verification ────────────────────────────────────────────────────
@@ -80,12 +103,8 @@ public class UserService {
         user.setEmailVerificationTokenHash(null); // clears hash
         userRepository.save(user);
 
-        try {
-            // user.getEmail() / getFirstName() are decrypted by the listener after load
-            emailService.sendWelcomeEmail(user.getEmail(), user.getFirstName());
-        } catch (Exception e) {
-            System.err.println("Failed to send welcome email after verification: " + e.getMessage());
-        }
+        // user.getEmail() / getFirstName() are decrypted by the listener after load
+        emailService.sendWelcomeEmail(user.getEmail(), user.getFirstName());
     }
 
     // ── Forgot password ───────────────────────────────────────────────────────
@@ -101,16 +120,7 @@ public class UserService {
         user.setResetTokenExpiry(java.time.LocalDateTime.now().plusHours(1));
         userRepository.save(user);
 
-        try {
-            emailService.sendPasswordResetEmail(user.getEmail(), token);
-        } catch (Exception e) {
-            String resetLink = frontendBaseUrl + "/reset-password?token=" + token;
-            System.out.println("------------------------------------------------");
-            System.out.println("PASSWORD RESET LINK (Dev Mode):");
-            System.out.println(resetLink);
-            System.out.println("------------------------------------------------");
-            System.err.println("Failed to send password reset email (suppressed for dev): " + e.getMessage());
-        }
+        emailService.sendPasswordResetEmail(user.getEmail(), token);
     }
 
     // ── Reset password ────────────────────────────────────────────────────────
@@ -0,0 +1,188 @@
+package com.bookurmedical.service;
+
+import com.bookurmedical.annotation.CausalWrites;
+import com.bookurmedical.annotation.SecondaryReads;
+import com.bookurmedical.dto.VitalTrendPoint;
+import com.bookurmedical.entity.VitalReading;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Time-series storage of vital signs (heart rate, SpO2, blood pressure,
+ * respiratory rate).
+ *
+ * Values are encrypted per reading, so aggregation cannot run inside Mongo.
+ * Trend queries instead stream one bounded, index-backed range query with a
+ * {timestamp, value} projection, decrypt each value once and fold it into
+ * per-hour / per-day min/max/avg buckets on the server — memory is bounded by
+ * the number of buckets, not the number of readings.
+ */
+@Service
+public class VitalsService {
+
+    private static final Logger log = LoggerFactory.getLogger(VitalsService.class);
+
+    public static final Set<String> TYPES = Set.of(VitalReading.HEART_RATE, VitalReading.SPO2,
+            VitalReading.BLOOD_PRESSURE, VitalReading.RESPIRATORY_RATE);
+
+    private static final Pattern NUMBER = Pattern.compile("\\d+(?:\\.\\d+)?");
+    private static final Pattern BLOOD_PRESSURE = Pattern.compile("(\\d+(?:\\.\\d+)?)\\s*/\\s*(\\d+(?:\\.\\d+)?)");
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Value("${app.vitals.max-range-results:5000}")
+    private int maxRangeResults;
+
+    @Value("${app.vitals.max-trend-buckets:2000}")
+    private int maxTrendBuckets;
+
+    /**
+     * Creates the time-series collection up front — an insert into a missing
+     * collection would silently create a regular one.
+     */
+    @PostConstruct
+    public void ensureCollection() {
+        try {
+            if (!mongoTemplate.collectionExists(VitalReading.class)) {
+                mongoTemplate.createCollection(VitalReading.class);
+                mongoTemplate.indexOps(VitalReading.class).createIndex(new Index()
+                        .on("meta.userId", Sort.Direction.ASC)
+                        .on("meta.type", Sort.Direction.ASC)
+                        .on("timestamp", Sort.Direction.ASC));
+            }
+        } catch (Exception e) {
+            log.warn("[Vitals] Could not create time-series collection: {}", e.getMessage());
+        }
+    }
+
+    // ── Write ─────────────────────────────────────────────────────────────────
+
+    /** Normalises and validates a reading value; null when it is not parseable. */
+    public String normalize(String type, String value) {
+        if (value == null)
+            return null;
+        if (VitalReading.BLOOD_PRESSURE.equals(type)) {
+            Matcher m = BLOOD_PRESSURE.matcher(value);
+            return m.find() ? m.group(1) + "/" + m.group(2) : null;
+        }
+        Matcher m = NUMBER.matcher(value);
+        return m.find() ? m.group() : null;
+    }
+
+    /** Stores readings in one batch insert; values are encrypted by the listener. */
+    @CausalWrites
+    public void record(Collection<VitalReading> readings) {
+        if (!readings.isEmpty())
+            mongoTemplate.insert(readings, VitalReading.class);
+    }
+
+    public VitalReading reading(String userId, String type, String value, Instant timestamp) {
+        return new VitalReading(null, new VitalReading.Meta(userId, type), timestamp, value);
+    }
+
+    // ── Read ──────────────────────────────────────────────────────────────────
+
+    /**
+     * One page of raw readings; {@code nextFrom} is null when the range is
+     * complete, otherwise the {@code from} to request the rest with.
+     */
+    public record ReadingPage(List<VitalReading> readings, Instant nextFrom) {
+    }
+
+    /**
+     * Raw readings in [from, to), oldest first, at most max-range-results per
+     * page. A page never splits readings that share a timestamp, so asking
+     * again from {@code nextFrom} neither repeats nor skips any.
+     */
+    @SecondaryReads
+    public ReadingPage range(String userId, String type, Instant from, Instant to) {
+        Query query = rangeQuery(userId, type, from, to).limit(maxRangeResults + 1);
+        query.fields().include("timestamp", "value").exclude("_id");
+        List<VitalReading> readings = mongoTemplate.find(query, VitalReading.class);
+        if (readings.size() <= maxRangeResults)
+            return new ReadingPage(readings, null);
+
+        Instant nextFrom = readings.get(maxRangeResults).getTimestamp();
+        int end = maxRangeResults;
+        while (end > 0 && readings.get(end - 1).getTimestamp().equals(nextFrom))
+            end--;
+        if (end == 0)
+            throw new IllegalArgumentException("More than " + maxRangeResults + " readings at " + nextFrom);
+        return new ReadingPage(readings.subList(0, end), nextFrom);
+    }
+
+    /** Min / max / avg per {@code interval} bucket in [from, to). */
+    @SecondaryReads
+    public List<VitalTrendPoint> trend(String userId, String type, Instant from, Instant to, ChronoUnit interval) {
+        long buckets = Duration.between(from, to).toSeconds() / interval.getDuration().toSeconds() + 1;
+        if (buckets > maxTrendBuckets)
+            throw new IllegalArgumentException("Range too large for " + interval.name().toLowerCase()
+                    + " buckets (max " + maxTrendBuckets + ")");
+
+        // series → bucket start → {min, max, sum, count}
+        Map<String, TreeMap<Instant, double[]>> series = new TreeMap<>();
+        Query query = rangeQuery(userId, type, from, to);
+        query.fields().include("timestamp", "value").exclude("_id");
+        try (Stream<VitalReading> readings = mongoTemplate.stream(query, VitalReading.class)) {
+            readings.forEach(reading -> {
+                Instant bucket = reading.getTimestamp().truncatedTo(interval);
+                if (VitalReading.BLOOD_PRESSURE.equals(type)) {
+                    Matcher m = BLOOD_PRESSURE.matcher(String.valueOf(reading.getValue()));
+                    if (m.find()) {
+                        accumulate(series, "systolic", bucket, Double.parseDouble(m.group(1)));
+                        accumulate(series, "diastolic", bucket, Double.parseDouble(m.group(2)));
+                    }
+                } else {
+                    Matcher m = NUMBER.matcher(String.valueOf(reading.getValue()));
+                    if (m.find())
+                        accumulate(series, type, bucket, Double.parseDouble(m.group()));
+                }
+            });
+        }
+
+        List<VitalTrendPoint> points = new ArrayList<>();
+        series.forEach((name, byBucket) -> byBucket.forEach((bucket, acc) -> points.add(
+                new VitalTrendPoint(bucket, name, acc[0], acc[1], acc[2] / acc[3], (long) acc[3]))));
+        return points;
+    }
+
+    private static Query rangeQuery(String userId, String type, Instant from, Instant to) {
+        return Query.query(Criteria.where("meta.userId").is(userId)
+                .and("meta.type").is(type)
+                .and("timestamp").gte(from).lt(to))
+                .with(Sort.by(Sort.Direction.ASC, "timestamp"));
+    }
+
+    private static void accumulate(Map<String, TreeMap<Instant, double[]>> series, String name, Instant bucket,
+            double value) {
+        double[] acc = series.computeIfAbsent(name, n -> new TreeMap<>())
+                .computeIfAbsent(bucket, b -> new double[] { Double.MAX_VALUE, -Double.MAX_VALUE, 0, 0 });
+        acc[0] = Math.min(acc[0], value);
+        acc[1] = Math.max(acc[1], value);
+        acc[2] += value;
+        acc[3]++;
+    }
+}
@@ -0,0 +1,7 @@
+package com.bookurmedical.storage;
+
+import java.time.Instant;
+
+/** Metadata of a stored blob, as reported by the backing {@link BlobStore}. */
+public record BlobInfo(String key, long size, Instant lastModified) {
+}
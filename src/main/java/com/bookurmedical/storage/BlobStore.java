@@ -0,0 +1,78 @@
+package com.bookurmedical.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+/**
+ * Storage SPI for uploaded files. Blobs are immutable once written and are
+ * addressed by a flat key (the stored file name).
+ *
+ * Implementations:
+ * - {@link LocalBlobStore} : a directory on local disk (app.storage.type=local)
+ * - {@link S3BlobStore} : any S3-compatible object store, e.g. AWS S3 or
+ * MinIO (app.storage.type=s3)
+ */
+public interface BlobStore {
+
+    /**
+     * Creates an empty staging file on local disk. Callers write the blob
+     * content there and hand it over with {@link #put(String, Path)}.
+     */
+    Path createStagingFile(String key) throws IOException;
+
+    /**
+     * Stores a staged file under {@code key}, taking ownership of the staged
+     * file. The returned future completes once the blob is durable in the
+     * backend; until then reads of {@code key} are served from the staged copy.
+     */
+    CompletableFuture<Void> put(String key, Path stagedFile);
+
+    /**
+     * Deletes staging files last modified before {@code cutoff}: leftovers of
+     * uploads that failed before {@link #put} took them over. Staging files
+     * still being uploaded are kept.
+     *
+     * @return number of files deleted
+     */
+    int purgeStaging(Instant cutoff) throws IOException;
+
+    /** Size and modification time, or empty if the blob does not exist. */
+    Optional<BlobInfo> stat(String key) throws IOException;
+
+    /** Opens {@code length} bytes of the blob starting at {@code offset}. */
+    InputStream open(String key, long offset, long length) throws IOException;
+
+    /**
+     * Local file backing the blob, if there is one. Lets callers use
+     * zero-copy transfers (sendfile) instead of streaming through the heap.
+     */
+    default Optional<Path> localPath(String key) {
+        return Optional.empty();
+    }
+
+    void delete(String key) throws IOException;
+
+    /** Deletes several blobs; backends with a batch API override this. */
+    default void deleteAll(List<String> keys) throws IOException {
+        for (String key : keys)
+            delete(key);
+    }
+
+    /**
+     * Moves a blob out of the live namespace into a quarantine area, where it
+     * no longer shows up in {@link #list()} or reads but can be restored.
+     */
+    void quarantine(String key) throws IOException;
+
+    /**
+     * Lazily lists live blobs. The stream must be closed; it holds at most one
+     * page / directory batch of entries in memory at a time.
+     */
+    Stream<BlobInfo> list() throws IOException;
+}
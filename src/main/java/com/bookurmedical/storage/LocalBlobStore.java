@@ -0,0 +1,165 @@
+package com.bookurmedical.storage;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * {@link BlobStore} backed by a local directory. Staging files live in a
+ * sub-directory of the root so that {@link #put} is a single atomic rename.
+ */
+public class LocalBlobStore implements BlobStore {
+
+    private final Path root;
+    private final Path staging;
+    private final Path quarantine;
+
+    public LocalBlobStore(Path root) {
+        this.root = root.toAbsolutePath().normalize();
+        this.staging = this.root.resolve(".staging");
+        this.quarantine = this.root.resolve(".quarantine");
+        try {
+            Files.createDirectories(this.staging);
+            Files.createDirectories(this.quarantine);
+        } catch (IOException ex) {
+            throw new RuntimeException("Could not create the directory where the uploaded files will be stored.", ex);
+        }
+    }
+
+    @Override
+    public Path createStagingFile(String key) throws IOException {
+        return Files.createTempFile(staging, "upload-", ".part");
+    }
+
+    @Override
+    public CompletableFuture<Void> put(String key, Path stagedFile) {
+        try {
+            Files.move(stagedFile, resolve(key), StandardCopyOption.ATOMIC_MOVE);
+            return CompletableFuture.completedFuture(null);
+        } catch (IOException ex) {
+            return CompletableFuture.failedFuture(ex);
+        }
+    }
+
+    @Override
+    public int purgeStaging(Instant cutoff) throws IOException {
+        // put() is a rename, so nothing in staging is mid-upload
+        return StagingFiles.purge(staging, cutoff, file -> false);
+    }
+
+    @Override
+    public Optional<BlobInfo> stat(String key) throws IOException {
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(resolve(key), BasicFileAttributes.class);
+            if (!attrs.isRegularFile())
+                return Optional.empty();
+            return Optional.of(new BlobInfo(key, attrs.size(), attrs.lastModifiedTime().toInstant()));
+        } catch (NoSuchFileException ex) {
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public InputStream open(String key, long offset, long length) throws IOException {
+        FileChannel channel = FileChannel.open(resolve(key), StandardOpenOption.READ);
+        channel.position(offset);
+        return new LimitedInputStream(Channels.newInputStream(channel), length);
+    }
+
+    @Override
+    public Optional<Path> localPath(String key) {
+        Path path = resolve(key);
+        return Files.isRegularFile(path) ? Optional.of(path) : Optional.empty();
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        Files.deleteIfExists(resolve(key));
+    }
+
+    @Override
+    public void quarantine(String key) throws IOException {
+        Path source = resolve(key);
+        if (Files.exists(source))
+            Files.move(source, quarantine.resolve(source.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    @Override
+    public Stream<BlobInfo> list() throws IOException {
+        DirectoryStream<Path> entries = Files.newDirectoryStream(root,
+                path -> !path.getFileName().toString().startsWith("."));
+        return StreamSupport.stream(entries.spliterator(), false)
+                .onClose(() -> {
+                    try {
+                        entries.close();
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                })
+                .map(path -> {
+                    try {
+                        BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+                        return attrs.isRegularFile()
+                                ? new BlobInfo(path.getFileName().toString(), attrs.size(),
+                                        attrs.lastModifiedTime().toInstant())
+                                : null;
+                    } catch (IOException ex) {
+                        return null; // deleted concurrently
+                    }
+                })
+                .filter(Objects::nonNull);
+    }
+
+    private Path resolve(String key) {
+        Path path = root.resolve(key).normalize();
+        if (!path.getParent().equals(root) || key.startsWith("."))
+            throw new IllegalArgumentException("Invalid storage key: " + key);
+        return path;
+    }
+
+    /** Stops reading after {@code remaining} bytes. */
+    static final class LimitedInputStream extends FilterInputStream {
+        private long remaining;
+
+        LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0)
+                return -1;
+            int b = super.read();
+            if (b >= 0)
+                remaining--;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0)
+                return -1;
+            int n = super.read(b, off, (int) Math.min(len, remaining));
+            if (n > 0)
+                remaining -= n;
+            return n;
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package com.bookurmedical.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.core.FileRequestBodyConfiguration;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CopyObjectRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.Delete;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.S3Object;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * {@link BlobStore} for S3-compatible object stores (AWS S3, MinIO, ...).
+ *
+ * Writes never block the calling thread on the object store:
+ * - files up to one part are sent with a single async PutObject;
+ * - larger files use a multipart upload whose parts are sent from the staged
+ * file in {@code parallelParts} concurrent lanes, then completed async.
+ *
+ * While an upload is in flight the staged local copy stays registered, so a
+ * client that downloads a file right after uploading it is served locally.
+ */
+public class S3BlobStore implements BlobStore {
+
+    private static final Logger log = LoggerFactory.getLogger(S3BlobStore.class);
+    private static final String QUARANTINE_PREFIX = "quarantine/";
+    private static final int MAX_DELETE_BATCH = 1000;
+
+    private final S3AsyncClient s3;
+    private final String bucket;
+    private final Path staging;
+    private final long partSize;
+    private final int parallelParts;
+    private final ConcurrentHashMap<String, Path> pending = new ConcurrentHashMap<>();
+
+    public S3BlobStore(S3AsyncClient s3, String bucket, Path staging, long partSize, int parallelParts) {
+        this.s3 = s3;
+        this.bucket = bucket;
+        this.staging = staging.toAbsolutePath().normalize();
+        this.partSize = partSize;
+        this.parallelParts = parallelParts;
+        try {
+            Files.createDirectories(this.staging);
+        } catch (IOException ex) {
+            throw new RuntimeException("Could not create the upload staging directory.", ex);
+        }
+    }
+
+    // ── Writes ────────────────────────────────────────────────────────────────
+
+    @Override
+    public Path createStagingFile(String key) throws IOException {
+        return Files.createTempFile(staging, "upload-", ".part");
+    }
+
+    @Override
+    public CompletableFuture<Void> put(String key, Path stagedFile) {
+        long size;
+        try {
+            size = Files.size(stagedFile);
+        } catch (IOException ex) {
+            return CompletableFuture.failedFuture(ex);
+        }
+        pending.put(key, stagedFile);
+
+        CompletableFuture<Void> upload = size <= partSize
+                ? s3.putObject(PutObjectRequest.builder().bucket(bucket).key(key).contentLength(size).build(),
+                        AsyncRequestBody.fromFile(stagedFile)).thenApply(r -> null)
+                : multipartUpload(key, stagedFile, size);
+
+        return upload.whenComplete((ok, err) -> {
+            pending.remove(key, stagedFile);
+            try {
+                Files.deleteIfExists(stagedFile);
+            } catch (IOException ex) {
+                log.warn("[Storage] Could not delete staged file {}: {}", stagedFile, ex.getMessage());
+            }
+            if (err != null)
+                log.error("[Storage] Upload of '{}' to bucket '{}' failed: {}", key, bucket, err.getMessage());
+        });
+    }
+
+    @Override
+    public int purgeStaging(Instant cutoff) throws IOException {
+        return StagingFiles.purge(staging, cutoff, pending::containsValue);
+    }
+
+    private CompletableFuture<Void> multipartUpload(String key, Path file, long size) {
+        return s3.createMultipartUpload(CreateMultipartUploadRequest.builder().bucket(bucket).key(key).build())
+                .thenCompose(created -> {
+                    String uploadId = created.uploadId();
+                    int partCount = (int) ((size + partSize - 1) / partSize);
+                    ConcurrentLinkedQueue<CompletedPart> parts = new ConcurrentLinkedQueue<>();
+
+                    // Each lane uploads parts lane, lane + N, lane + 2N, ... one after another
+                    List<CompletableFuture<Void>> lanes = new ArrayList<>();
+                    for (int lane = 0; lane < Math.min(parallelParts, partCount); lane++) {
+                        CompletableFuture<Void> chain = CompletableFuture.completedFuture(null);
+                        for (int part = lane; part < partCount; part += parallelParts) {
+                            int partNumber = part + 1;
+                            long position = part * partSize;
+                            long length = Math.min(partSize, size - position);
+                            chain = chain.thenCompose(v -> uploadPart(key, uploadId, file, partNumber, position, length)
+                                    .thenAccept(parts::add));
+                        }
+                        lanes.add(chain);
+                    }
+
+                    return CompletableFuture.allOf(lanes.toArray(CompletableFuture[]::new))
+                            .thenCompose(v -> {
+                                List<CompletedPart> ordered = new ArrayList<>(parts);
+                                ordered.sort(Comparator.comparing(CompletedPart::partNumber));
+                                return s3.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                                        .bucket(bucket).key(key).uploadId(uploadId)
+                                        .multipartUpload(CompletedMultipartUpload.builder().parts(ordered).build())
+                                        .build());
+                            })
+                            .<Void>thenApply(r -> null)
+                            .exceptionallyCompose(err -> s3.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                                    .bucket(bucket).key(key).uploadId(uploadId).build())
+                                    .handle((r, abortErr) -> {
+                                        throw err instanceof CompletionException ce ? ce : new CompletionException(err);
+                                    }));
+                });
+    }
+
+    private CompletableFuture<CompletedPart> uploadPart(String key, String uploadId, Path file, int partNumber,
+            long position, long length) {
+        UploadPartRequest request = UploadPartRequest.builder()
+                .bucket(bucket).key(key).uploadId(uploadId)
+                .partNumber(partNumber).contentLength(length)
+                .build();
+        AsyncRequestBody body = AsyncRequestBody.fromFile(FileRequestBodyConfiguration.builder()
+                .path(file).position(position).numBytesToRead(length).build());
+        return s3.uploadPart(request, body)
+                .thenApply(r -> CompletedPart.builder().partNumber(partNumber).eTag(r.eTag()).build());
+    }
+
+    // ── Reads ─────────────────────────────────────────────────────────────────
+
+    @Override
+    public Optional<BlobInfo> stat(String key) throws IOException {
+        Path staged = pending.get(key);
+        if (staged != null && Files.exists(staged))
+            return Optional.of(new BlobInfo(key, Files.size(staged), Files.getLastModifiedTime(staged).toInstant()));
+        try {
+            HeadObjectResponse head = s3.headObject(HeadObjectRequest.builder().bucket(bucket).key(key).build())
+                    .join();
+            return Optional.of(new BlobInfo(key, head.contentLength(), head.lastModified()));
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof S3Exception s3Ex && s3Ex.statusCode() == 404)
+                return Optional.empty();
+            throw new IOException("Could not stat '" + key + "'", ex.getCause());
+        }
+    }
+
+    @Override
+    public InputStream open(String key, long offset, long length) throws IOException {
+        Path staged = pending.get(key);
+        if (staged != null && Files.exists(staged)) {
+            FileChannel channel = FileChannel.open(staged, StandardOpenOption.READ);
+            channel.position(offset);
+            return new LocalBlobStore.LimitedInputStream(Channels.newInputStream(channel), length);
+        }
+        if (length <= 0)
+            return InputStream.nullInputStream();
+        try {
+            return s3.getObject(GetObjectRequest.builder().bucket(bucket).key(key)
+                    .range("bytes=" + offset + "-" + (offset + length - 1)).build(),
+                    AsyncResponseTransformer.toBlockingInputStream()).join();
+        } catch (CompletionException ex) {
+            throw new IOException("Could not read '" + key + "'", ex.getCause());
+        }
+    }
+
+    @Override
+    public Optional<Path> localPath(String key) {
+        return Optional.ofNullable(pending.get(key)).filter(Files::exists);
+    }
+
+    // ── Housekeeping ──────────────────────────────────────────────────────────
+
+    @Override
+    public void delete(String key) throws IOException {
+        try {
+            s3.deleteObject(DeleteObjectRequest.builder().bucket(bucket).key(key).build()).join();
+        } catch (CompletionException ex) {
+            throw new IOException("Could not delete '" + key + "'", ex.getCause());
+        }
+    }
+
+    @Override
+    public void deleteAll(List<String> keys) throws IOException {
+        for (int from = 0; from < keys.size(); from += MAX_DELETE_BATCH) {
+            List<ObjectIdentifier> batch = keys.subList(from, Math.min(keys.size(), from + MAX_DELETE_BATCH))
+                    .stream().map(key -> ObjectIdentifier.builder().key(key).build()).toList();
+            try {
+                s3.deleteObjects(DeleteObjectsRequest.builder().bucket(bucket)
+                        .delete(Delete.builder().objects(batch).quiet(true).build()).build()).join();
+            } catch (CompletionException ex) {
+                throw new IOException("Could not delete " + batch.size() + " objects", ex.getCause());
+            }
+        }
+    }
+
+    @Override
+    public void quarantine(String key) throws IOException {
+        try {
+            s3.copyObject(CopyObjectRequest.builder()
+                    .sourceBucket(bucket).sourceKey(key)
+                    .destinationBucket(bucket).destinationKey(QUARANTINE_PREFIX + key)
+                    .build()).join();
+        } catch (CompletionException ex) {
+            throw new IOException("Could not quarantine '" + key + "'", ex.getCause());
+        }
+        delete(key);
+    }
+
+    @Override
+    public Stream<BlobInfo> list() {
+        Iterator<BlobInfo> pages = new Iterator<>() {
+            private Iterator<S3Object> page = Collections.emptyIterator();
+            private String continuationToken;
+            private boolean exhausted;
+
+            @Override
+            public boolean hasNext() {
+                while (!page.hasNext() && !exhausted) {
+                    ListObjectsV2Response response = s3.listObjectsV2(ListObjectsV2Request.builder()
+                            .bucket(bucket).continuationToken(continuationToken).build()).join();
+                    page = response.contents().iterator();
+                    continuationToken = response.nextContinuationToken();
+                    exhausted = !Boolean.TRUE.equals(response.isTruncated());
+                }
+                return page.hasNext();
+            }
+
+            @Override
+            public BlobInfo next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                S3Object object = page.next();
+                return new BlobInfo(object.key(), object.size(), object.lastModified());
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(pages, Spliterator.ORDERED), false)
+                .filter(info -> !info.key().startsWith(QUARANTINE_PREFIX));
+    }
+}
@@ -0,0 +1,40 @@
+package com.bookurmedical.storage;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.function.Predicate;
+
+/** Staging-directory housekeeping shared by the {@link BlobStore} implementations. */
+final class StagingFiles {
+
+    private StagingFiles() {
+    }
+
+    /**
+     * Deletes regular files in {@code dir} last modified before {@code cutoff},
+     * skipping those {@code inUse} reports as still needed.
+     *
+     * @return number of files deleted
+     */
+    static int purge(Path dir, Instant cutoff, Predicate<Path> inUse) throws IOException {
+        int deleted = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                try {
+                    if (!Files.isRegularFile(file) || inUse.test(file)
+                            || !Files.getLastModifiedTime(file).toInstant().isBefore(cutoff))
+                        continue;
+                    if (Files.deleteIfExists(file))
+                        deleted++;
+                } catch (NoSuchFileException ex) {
+                    // put() or another sweep got there first
+                }
+            }
+        }
+        return deleted;
+    }
+}
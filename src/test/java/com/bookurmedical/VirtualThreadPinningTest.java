@@ -0,0 +1,253 @@
+package com.bookurmedical;
+
+import com.bookurmedical.cache.CacheInvalidationBus;
+import com.bookurmedical.dto.SignupRequest;
+import com.bookurmedical.entity.MedicalCaseSheet;
+import com.bookurmedical.entity.User;
+import com.bookurmedical.repository.MedicalCaseSheetRepository;
+import com.bookurmedical.repository.UserRepository;
+import com.bookurmedical.security.TimedPasswordEncoder;
+import com.bookurmedical.security.jwt.JwtUtils;
+import com.bookurmedical.security.services.UserDetailsServiceImpl;
+import com.bookurmedical.service.EmailService;
+import com.bookurmedical.service.FieldEncryptionService;
+import com.bookurmedical.service.MedicalCaseSheetHistoryService;
+import com.bookurmedical.service.MedicalCaseSheetService;
+import com.bookurmedical.service.UserService;
+import com.bookurmedical.service.VitalsService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.stubbing.Answer;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.ProviderManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs the signup, signin and case-sheet submit paths concurrently on
+ * virtual threads and fails on any JFR jdk.VirtualThreadPinned event, i.e. a
+ * virtual thread that blocked while holding a monitor and so kept its carrier.
+ *
+ * Mongo is replaced by mocks that park for a few milliseconds per call, the
+ * way a socket read would; everything between those calls (BCrypt, field
+ * encryption, blind indexes, JWT, the services themselves) is the real code.
+ * Mail is mocked: it runs on its own platform-thread pool (AsyncConfig).
+ */
+class VirtualThreadPinningTest {
+
+    private static final int CONCURRENCY = 32;
+    private static final Duration MONGO_LATENCY = Duration.ofMillis(3);
+    private static final String PASSWORD = "correct horse battery staple";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final FieldEncryptionService encryptionService = new FieldEncryptionService("pinning-test",
+            meterRegistry);
+    private final PasswordEncoder passwordEncoder = new TimedPasswordEncoder(new BCryptPasswordEncoder(4),
+            meterRegistry);
+
+    private UserService userService;
+    private AuthenticationManager authenticationManager;
+    private JwtUtils jwtUtils;
+    private MedicalCaseSheetService caseSheetService;
+
+    @BeforeEach
+    void setUp() {
+        String passwordHash = passwordEncoder.encode(PASSWORD);
+        UserRepository userRepository = mock(UserRepository.class);
+        when(userRepository.existsByUsername(anyString())).then(mongo(false));
+        when(userRepository.existsByEmailHash(anyString())).then(mongo(false));
+        when(userRepository.save(any(User.class))).then(invocation -> {
+            pauseForMongo();
+            return invocation.getArgument(0);
+        });
+        when(userRepository.findByUsername(anyString())).then(invocation -> {
+            pauseForMongo();
+            User user = new User();
+            user.setId(new ObjectId().toHexString());
+            user.setUsername(invocation.getArgument(0));
+            user.setPassword(passwordHash);
+            user.setRole(UserService.DEFAULT_ROLE);
+            user.setEmailVerified(true);
+            return Optional.of(user);
+        });
+
+        userService = new UserService();
+        ReflectionTestUtils.setField(userService, "userRepository", userRepository);
+        ReflectionTestUtils.setField(userService, "passwordEncoder", passwordEncoder);
+        ReflectionTestUtils.setField(userService, "emailService", mock(EmailService.class));
+        ReflectionTestUtils.setField(userService, "encryptionService", encryptionService);
+
+        UserDetailsServiceImpl userDetailsService = new UserDetailsServiceImpl();
+        ReflectionTestUtils.setField(userDetailsService, "userRepository", userRepository);
+        DaoAuthenticationProvider authProvider = new DaoAuthenticationProvider(userDetailsService);
+        authProvider.setPasswordEncoder(passwordEncoder);
+        authenticationManager = new ProviderManager(authProvider);
+
+        jwtUtils = new JwtUtils();
+        ReflectionTestUtils.setField(jwtUtils, "jwtSecret", Base64.getEncoder().encodeToString(new byte[32]));
+        ReflectionTestUtils.setField(jwtUtils, "jwtExpirationMs", 60_000);
+        ReflectionTestUtils.setField(jwtUtils, "meterRegistry", meterRegistry);
+
+        MongoCustomConversions conversions = new MongoCustomConversions(List.of());
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+        MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+        when(mongoTemplate.getConverter()).thenReturn(converter);
+        when(mongoTemplate.getCollectionName(MedicalCaseSheet.class)).thenReturn("medical_case_sheets");
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(Document.class), anyString())).then(invocation -> {
+                    pauseForMongo();
+                    return new Document("_id", new ObjectId()).append("revision", 1L);
+                });
+        MedicalCaseSheetRepository caseSheetRepository = mock(MedicalCaseSheetRepository.class);
+        when(caseSheetRepository.findFirstByUserIdOrderByIdDesc(anyString())).then(mongo(Optional.empty()));
+
+        caseSheetService = new MedicalCaseSheetService();
+        ReflectionTestUtils.setField(caseSheetService, "mongoTemplate", mongoTemplate);
+        ReflectionTestUtils.setField(caseSheetService, "medicalCaseSheetRepository", caseSheetRepository);
+        ReflectionTestUtils.setField(caseSheetService, "encryptionService", encryptionService);
+        ReflectionTestUtils.setField(caseSheetService, "historyService", mock(MedicalCaseSheetHistoryService.class));
+        ReflectionTestUtils.setField(caseSheetService, "vitalsService", mock(VitalsService.class));
+        ReflectionTestUtils.setField(caseSheetService, "cacheInvalidationBus", mock(CacheInvalidationBus.class));
+        ReflectionTestUtils.setField(caseSheetService, "blindIndexPrefixes", true);
+    }
+
+    @Test
+    void recorderSeesPinning() throws Exception {
+        Object monitor = new Object();
+        List<String> pinned = recordPinning(() -> {
+            synchronized (monitor) {
+                pauseForMongo();
+            }
+        });
+        assertThat(pinned).isNotEmpty();
+    }
+
+    @Test
+    void signupDoesNotPin() throws Exception {
+        assertThat(recordPinning(() -> {
+            SignupRequest request = new SignupRequest();
+            String username = "patient-" + ObjectId.get();
+            request.setUsername(username);
+            request.setEmail(username + "@example.org");
+            request.setPassword(PASSWORD);
+            request.setFirstName("Pat");
+            request.setLastName("Ient");
+            request.setPhoneNumber("+15550100");
+            userService.registerUser(request);
+        })).isEmpty();
+    }
+
+    @Test
+    void signinDoesNotPin() throws Exception {
+        assertThat(recordPinning(() -> {
+            Authentication authentication = authenticationManager.authenticate(
+                    new UsernamePasswordAuthenticationToken("patient-" + ObjectId.get(), PASSWORD));
+            String jwt = jwtUtils.generateJwtToken(authentication);
+            assertThat(jwtUtils.validateJwtToken(jwt)).isTrue();
+        })).isEmpty();
+    }
+
+    @Test
+    void submitDoesNotPin() throws Exception {
+        assertThat(recordPinning(() -> {
+            MedicalCaseSheet sheet = new MedicalCaseSheet();
+            sheet.setName("Pat Ient");
+            sheet.setDob("1970-01-01");
+            sheet.setHeartRate("72");
+            sheet.setPrimaryDiagnosis("Type 2 diabetes mellitus");
+            sheet.setAllergies("Penicillin");
+            caseSheetService.submit(new ObjectId().toHexString(), sheet);
+        })).isEmpty();
+    }
+
+    // ── Helpers ───────────────────────────────────────────────────────────────
+
+    private interface Step {
+        void run() throws Exception;
+    }
+
+    /** Runs the step CONCURRENCY times on virtual threads; returns one line per pinning event. */
+    private static List<String> recordPinning(Step step) throws Exception {
+        List<String> pinned = new CopyOnWriteArrayList<>();
+        try (RecordingStream stream = new RecordingStream()) {
+            stream.enable("jdk.VirtualThreadPinned").withThreshold(Duration.ZERO).withStackTrace();
+            stream.onEvent("jdk.VirtualThreadPinned", event -> pinned.add(describe(event)));
+            stream.startAsync();
+
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                List<Future<?>> runs = new ArrayList<>();
+                for (int i = 0; i < CONCURRENCY; i++)
+                    runs.add(executor.submit(() -> {
+                        step.run();
+                        return null;
+                    }));
+                for (Future<?> run : runs)
+                    run.get(30, TimeUnit.SECONDS);
+            }
+            // Flushes recorded events to the handler before returning
+            stream.stop();
+        }
+        return pinned;
+    }
+
+    private static String describe(RecordedEvent event) {
+        List<RecordedFrame> frames = event.getStackTrace() != null ? event.getStackTrace().getFrames() : List.of();
+        return frames.stream()
+                .map(frame -> frame.getMethod().getType().getName() + "." + frame.getMethod().getName() + ":"
+                        + frame.getLineNumber())
+                .collect(Collectors.joining("\n\tat ", "pinned for " + event.getDuration().toMillis() + " ms\n\tat ",
+                        ""));
+    }
+
+    private static <T> Answer<T> mongo(T result) {
+        return invocation -> {
+            pauseForMongo();
+            return result;
+        };
+    }
+
+    private static void pauseForMongo() throws InterruptedException {
+        Thread.sleep(MONGO_LATENCY);
+    }
+}
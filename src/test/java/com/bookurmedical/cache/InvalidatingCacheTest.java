@@ -0,0 +1,78 @@
+package com.bookurmedical.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InvalidatingCacheTest {
+
+    private static final int MAX_SIZE = 100;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private InvalidatingCache<String, String> cache(Duration ttl) {
+        return new InvalidatingCache<>("test", "documents", ttl, MAX_SIZE, value -> "doc-" + value, meterRegistry);
+    }
+
+    private Supplier<String> loader(String value) {
+        return () -> {
+            loads.incrementAndGet();
+            return value;
+        };
+    }
+
+    private double size() {
+        return meterRegistry.get("bookurmedical.cache.size").gauge().value();
+    }
+
+    @Test
+    void keepsAdmittingEntriesPastMaxSize() {
+        InvalidatingCache<String, String> cache = cache(Duration.ofMinutes(5));
+        for (int i = 0; i < MAX_SIZE * 5; i++)
+            cache.get("key-" + i, loader("value-" + i));
+        assertThat(size()).isLessThanOrEqualTo(MAX_SIZE);
+
+        // The latest keys are still cached: no reload
+        loads.set(0);
+        for (int i = MAX_SIZE * 5 - 10; i < MAX_SIZE * 5; i++)
+            assertThat(cache.get("key-" + i, loader("value-" + i))).isEqualTo("value-" + i);
+        assertThat(loads).hasValue(0);
+
+        // The oldest were evicted to make room
+        cache.get("key-0", loader("value-0"));
+        assertThat(loads).hasValue(1);
+        assertThat(meterRegistry.get("bookurmedical.cache.evictions").counter().count()).isPositive();
+    }
+
+    @Test
+    void dropsExpiredEntriesBeforeLiveOnes() throws InterruptedException {
+        InvalidatingCache<String, String> cache = cache(Duration.ofMillis(50));
+        for (int i = 0; i < MAX_SIZE; i++)
+            cache.get("old-" + i, loader("old-" + i));
+        Thread.sleep(100);
+
+        cache.get("new", loader("new"));
+        assertThat(size()).isEqualTo(1);
+        loads.set(0);
+        cache.get("new", loader("new"));
+        assertThat(loads).hasValue(0);
+    }
+
+    @Test
+    void invalidationStillEvictsAfterTrimming() {
+        InvalidatingCache<String, String> cache = cache(Duration.ofMinutes(5));
+        for (int i = 0; i <= MAX_SIZE; i++)
+            cache.get("key-" + i, loader("value-" + i));
+
+        cache.invalidate("doc-value-" + MAX_SIZE);
+        loads.set(0);
+        cache.get("key-" + MAX_SIZE, loader("value-" + MAX_SIZE));
+        assertThat(loads).hasValue(1);
+    }
+}
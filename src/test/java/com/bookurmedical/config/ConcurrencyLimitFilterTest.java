@@ -0,0 +1,55 @@
+package com.bookurmedical.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConcurrencyLimitFilterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(meterRegistry, 1, 1, 10, 2.0, 1);
+
+    private double inFlight(String group) {
+        return meterRegistry.get("bookurmedical.concurrency.in-flight").tag("group", group).gauge().value();
+    }
+
+    private static MockHttpServletRequest upload() {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/medical-history/upload");
+        request.setServletPath("/api/medical-history/upload");
+        request.setAsyncSupported(true);
+        return request;
+    }
+
+    @Test
+    void asyncRequestHoldsItsSlotUntilComplete() throws Exception {
+        MockHttpServletRequest request = upload();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        FilterChain startsAsync = (req, res) -> req.startAsync();
+
+        filter.doFilter(request, response, startsAsync);
+        assertThat(inFlight("upload")).isEqualTo(1);
+
+        // At the limit of 1: a second upload is shed while the first one's async work runs
+        MockHttpServletResponse second = new MockHttpServletResponse();
+        filter.doFilter(upload(), second, startsAsync);
+        assertThat(second.getStatus()).isEqualTo(503);
+
+        response.setStatus(500);
+        request.getAsyncContext().complete();
+        assertThat(inFlight("upload")).isZero();
+    }
+
+    @Test
+    void syncRequestReleasesOnReturn() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/medical-history/submit");
+        request.setServletPath("/api/medical-history/submit");
+        filter.doFilter(request, new MockHttpServletResponse(), (req, res) -> {
+            assertThat(inFlight("submit")).isEqualTo(1);
+        });
+        assertThat(inFlight("submit")).isZero();
+    }
+}